@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.oidc.JwtOidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
+
+/**
+ * <p>
+ * Caching {@link Jwt} to {@link Authentication} converter, for clients sending the same access token with many
+ * requests: claims conversion (for instance {@link OidcId} creation) and authorities conversion run once per token.
+ * </p>
+ * <ul>
+ * <li>entries are keyed by a SHA-256 digest of the token value or by {@code jti} claim (see {@link KeyStrategy})</li>
+ * <li>entries are never served after token {@code exp}. Tokens without {@code exp} are not cached</li>
+ * <li>size is bounded: once full, expired entries are purged and then arbitrary ones until 90% of max size</li>
+ * <li>concurrent misses for the same token are coalesced: claims and authorities converters run once and other
+ * callers wait for their result. Failures are not cached</li>
+ * </ul>
+ * <p>
+ * Only immutable parts (converted claims and an immutable copy of the authorities) are cached. A new
+ * {@link Authentication} is created for each call: Spring {@code JwtAuthenticationProvider} sets request details on
+ * the returned authentication, which must therefore not be shared between requests.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ *
+ * @param <C> cached claims type ({@link OidcId} or {@link Jwt} for instance)
+ * @param <T> produced {@link Authentication} type
+ */
+public class CachingAuthenticationConverter<C, T extends Authentication> implements Converter<Jwt, T> {
+
+	private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final Converter<Jwt, ? extends C> claimsConverter;
+
+	private final Converter<Jwt, ? extends Collection<? extends GrantedAuthority>> authoritiesConverter;
+
+	private final AuthenticationFactory<? super C, ? extends T> authenticationFactory;
+
+	private final KeyStrategy keyStrategy;
+
+	private final int maxSize;
+
+	private final Clock clock;
+
+	private final Map<Object, CacheEntry<C>> cache = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param claimsConverter claims part of the authentication (should be immutable: it is shared between requests)
+	 * @param authoritiesConverter authorities part of the authentication
+	 * @param authenticationFactory creates a new authentication for each request, from cached parts
+	 * @param keyStrategy how tokens are identified
+	 * @param maxSize maximum number of cached tokens
+	 * @param clock time source for expiry checks
+	 */
+	public CachingAuthenticationConverter(
+			Converter<Jwt, ? extends C> claimsConverter,
+			Converter<Jwt, ? extends Collection<? extends GrantedAuthority>> authoritiesConverter,
+			AuthenticationFactory<? super C, ? extends T> authenticationFactory,
+			KeyStrategy keyStrategy,
+			int maxSize,
+			Clock clock) {
+		Assert.notNull(claimsConverter, "claimsConverter can't be null");
+		Assert.notNull(authoritiesConverter, "authoritiesConverter can't be null");
+		Assert.notNull(authenticationFactory, "authenticationFactory can't be null");
+		Assert.notNull(keyStrategy, "keyStrategy can't be null");
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.notNull(clock, "clock can't be null");
+		this.claimsConverter = claimsConverter;
+		this.authoritiesConverter = authoritiesConverter;
+		this.authenticationFactory = authenticationFactory;
+		this.keyStrategy = keyStrategy;
+		this.maxSize = maxSize;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param authoritiesConverter authorities part of the authentication
+	 * @param maxSize maximum number of cached tokens
+	 * @return a caching converter producing {@link OidcIdAuthenticationToken} (claims are a {@link JwtOidcId})
+	 */
+	public static CachingAuthenticationConverter<OidcId, OidcIdAuthenticationToken> oidcId(
+			Converter<Jwt, ? extends Collection<? extends GrantedAuthority>> authoritiesConverter,
+			int maxSize) {
+		return new CachingAuthenticationConverter<>(
+				JwtOidcId::new,
+				authoritiesConverter,
+				(jwt, oidcId, authorities) -> new OidcIdAuthenticationToken(oidcId, authorities),
+				KeyStrategy.TOKEN_DIGEST,
+				maxSize,
+				Clock.systemUTC());
+	}
+
+	/**
+	 * @param authoritiesConverter authorities part of the authentication
+	 * @param maxSize maximum number of cached tokens
+	 * @return a caching converter producing {@link JwtAuthenticationToken} (only authorities are cached)
+	 */
+	public static CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> jwt(
+			Converter<Jwt, ? extends Collection<? extends GrantedAuthority>> authoritiesConverter,
+			int maxSize) {
+		return new CachingAuthenticationConverter<>(
+				jwt -> jwt,
+				authoritiesConverter,
+				(jwt, claims, authorities) -> new JwtAuthenticationToken(jwt, authorities),
+				KeyStrategy.TOKEN_DIGEST,
+				maxSize,
+				Clock.systemUTC());
+	}
+
+	@Override
+	public T convert(Jwt jwt) {
+		final long now = clock.millis() / 1000L;
+		final long expiresAt = jwt.getExpiresAt() == null ? ClaimSet.MISSING_EPOCH_SECOND
+				: jwt.getExpiresAt().getEpochSecond();
+		if (expiresAt <= now) {
+			// no exp (can't tell when to evict) or already expired (should have been rejected by decoder)
+			return authenticationFactory.create(jwt, claimsConverter.convert(jwt), authorities(jwt));
+		}
+
+		final Object key = key(jwt);
+		for (;;) {
+			final CacheEntry<C> cached = cache.get(key);
+			if (cached != null) {
+				if (cached.expiresAt > now && cached.isFor(jwt)) {
+					hits.increment();
+					return create(jwt, cached.await());
+				}
+				if (cache.remove(key, cached)) {
+					evictions.increment();
+				}
+				continue;
+			}
+
+			final CacheEntry<C> created = new CacheEntry<>(
+					expiresAt,
+					keyStrategy == KeyStrategy.JTI ? jwt.getTokenValue() : null);
+			if (cache.putIfAbsent(key, created) != null) {
+				// lost a race with a concurrent miss: wait for its result
+				continue;
+			}
+			misses.increment();
+			makeRoom(now);
+			return create(jwt, created.load(jwt, this::parts, () -> cache.remove(key, created)));
+		}
+	}
+
+	/**
+	 * @return a snapshot of cache statistics
+	 */
+	public Stats getStats() {
+		return new Stats(hits.sum(), misses.sum(), evictions.sum(), cache.size());
+	}
+
+	/**
+	 * Drops all cached authentications (statistics are kept)
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	private Object key(Jwt jwt) {
+		if (keyStrategy == KeyStrategy.JTI) {
+			final String jti = jwt.getId();
+			if (jti != null) {
+				return jti;
+			}
+		}
+		return ByteBuffer.wrap(SHA_256.get().digest(jwt.getTokenValue().getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	private void makeRoom(long now) {
+		if (cache.size() <= maxSize) {
+			return;
+		}
+		final Iterator<CacheEntry<C>> expired = cache.values().iterator();
+		while (expired.hasNext()) {
+			if (expired.next().expiresAt <= now) {
+				expired.remove();
+				evictions.increment();
+			}
+		}
+		final Iterator<CacheEntry<C>> any = cache.values().iterator();
+		while (cache.size() > maxSize * 9 / 10 && any.hasNext()) {
+			any.next();
+			any.remove();
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * How cached entries are identified
+	 */
+	public static enum KeyStrategy {
+		/**
+		 * SHA-256 digest of the token value: safe with any token, costs a hash per request
+		 */
+		TOKEN_DIGEST,
+		/**
+		 * {@code jti} claim (digest for tokens without {@code jti}): cheaper. Entries hold the token value which is
+		 * compared on hits, so that tokens from different issuers sharing a {@code jti} can't be mixed up
+		 */
+		JTI
+	}
+
+	/**
+	 * Immutable snapshot of cache statistics
+	 */
+	public static final class Stats {
+		private final long hits;
+
+		private final long misses;
+
+		private final long evictions;
+
+		private final int size;
+
+		Stats(long hits, long misses, long evictions, int size) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.size = size;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return hits / (hits + misses), 0 if there was no request yet
+		 */
+		public double getHitRate() {
+			final long requests = hits + misses;
+			return requests == 0 ? 0.0 : (double) hits / requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits=%d, misses=%d, evictions=%d, size=%d", hits, misses, evictions, size);
+		}
+	}
+
+	/**
+	 * Creates a new authentication from a token and its cached parts
+	 *
+	 * @param <C> claims type
+	 * @param <T> authentication type
+	 */
+	@FunctionalInterface
+	public static interface AuthenticationFactory<C, T extends Authentication> {
+		/**
+		 * @param jwt the token being converted
+		 * @param claims claims converted from a token with the same value (shared: do not modify)
+		 * @param authorities immutable authorities converted from a token with the same value
+		 * @return a new authentication (it is not cached)
+		 */
+		T create(Jwt jwt, C claims, Collection<GrantedAuthority> authorities);
+	}
+
+	private T create(Jwt jwt, Parts<C> parts) {
+		return authenticationFactory.create(jwt, parts.claims, parts.authorities);
+	}
+
+	private Parts<C> parts(Jwt jwt) {
+		return new Parts<>(claimsConverter.convert(jwt), authorities(jwt));
+	}
+
+	private List<GrantedAuthority> authorities(Jwt jwt) {
+		final Collection<? extends GrantedAuthority> authorities = authoritiesConverter.convert(jwt);
+		return authorities == null ? List.of() : List.copyOf(authorities);
+	}
+
+	private static final class Parts<C> {
+		private final C claims;
+
+		private final List<GrantedAuthority> authorities;
+
+		Parts(C claims, List<GrantedAuthority> authorities) {
+			this.claims = claims;
+			this.authorities = authorities;
+		}
+	}
+
+	private static final class CacheEntry<C> {
+		private final long expiresAt;
+
+		private final String tokenValue;
+
+		private final CompletableFuture<Parts<C>> parts = new CompletableFuture<>();
+
+		CacheEntry(long expiresAt, String tokenValue) {
+			this.expiresAt = expiresAt;
+			this.tokenValue = tokenValue;
+		}
+
+		boolean isFor(Jwt jwt) {
+			return tokenValue == null || tokenValue.equals(jwt.getTokenValue());
+		}
+
+		Parts<C> load(Jwt jwt, Function<Jwt, Parts<C>> loader, Runnable discard) {
+			final Parts<C> loaded;
+			try {
+				loaded = loader.apply(jwt);
+			} catch (final RuntimeException | Error e) {
+				discard.run();
+				parts.completeExceptionally(e);
+				throw e;
+			}
+			parts.complete(loaded);
+			return loaded;
+		}
+
+		Parts<C> await() {
+			try {
+				return parts.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
+
+/**
+ * <p>
+ * Symbol table for well-known claim names: OpenID ({@link IdTokenClaimNames}, {@link StandardClaimNames}), JWT and
+ * Keycloak ones.
+ * </p>
+ * <p>
+ * {@link #intern(String)} and {@link #intern(byte[], int, int)} return the canonical instance for those names, which is
+ * the very same instance as the constants above (and as any {@code "sub"}-like literal in the JVM). Claim-sets storing
+ * interned names get identity matches when queried with constants, instead of char-by-char comparison. Unknown names
+ * are returned as is (never added to the table: it is immutable and bounded).
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public final class ClaimNames {
+
+	public static final String JTI = "jti";
+	public static final String NBF = "nbf";
+	public static final String TYP = "typ";
+	public static final String SCOPE = "scope";
+	public static final String SCP = "scp";
+	public static final String CLIENT_ID = "client_id";
+
+	public static final String REALM_ACCESS = "realm_access";
+	public static final String RESOURCE_ACCESS = "resource_access";
+	public static final String ROLES = "roles";
+	public static final String SESSION_STATE = "session_state";
+	public static final String ALLOWED_ORIGINS = "allowed-origins";
+
+	private static final String[] SYMBOLS;
+
+	private static final int[] HASHES;
+
+	/**
+	 * ASCII bytes of symbols, at the same indexes, for vectorized comparison with encoded names
+	 */
+	private static final byte[][] BYTES;
+
+	private static final int MAX_LENGTH;
+
+	/**
+	 * Indexed by {@code length << 7 | first ASCII byte}: true if some symbol has that length and first byte. Most
+	 * custom names are rejected there, without hashing
+	 */
+	private static final boolean[] CANDIDATES;
+
+	static {
+		final String[] names = {
+				IdTokenClaimNames.ISS,
+				IdTokenClaimNames.SUB,
+				IdTokenClaimNames.AUD,
+				IdTokenClaimNames.EXP,
+				IdTokenClaimNames.IAT,
+				IdTokenClaimNames.AUTH_TIME,
+				IdTokenClaimNames.NONCE,
+				IdTokenClaimNames.ACR,
+				IdTokenClaimNames.AMR,
+				IdTokenClaimNames.AZP,
+				IdTokenClaimNames.AT_HASH,
+				IdTokenClaimNames.C_HASH,
+				StandardClaimNames.NAME,
+				StandardClaimNames.GIVEN_NAME,
+				StandardClaimNames.FAMILY_NAME,
+				StandardClaimNames.MIDDLE_NAME,
+				StandardClaimNames.NICKNAME,
+				StandardClaimNames.PREFERRED_USERNAME,
+				StandardClaimNames.PROFILE,
+				StandardClaimNames.PICTURE,
+				StandardClaimNames.WEBSITE,
+				StandardClaimNames.EMAIL,
+				StandardClaimNames.EMAIL_VERIFIED,
+				StandardClaimNames.GENDER,
+				StandardClaimNames.BIRTHDATE,
+				StandardClaimNames.ZONEINFO,
+				StandardClaimNames.LOCALE,
+				StandardClaimNames.PHONE_NUMBER,
+				StandardClaimNames.PHONE_NUMBER_VERIFIED,
+				StandardClaimNames.ADDRESS,
+				StandardClaimNames.UPDATED_AT,
+				JTI,
+				NBF,
+				TYP,
+				SCOPE,
+				SCP,
+				CLIENT_ID,
+				REALM_ACCESS,
+				RESOURCE_ACCESS,
+				ROLES,
+				SESSION_STATE,
+				ALLOWED_ORIGINS };
+		SYMBOLS = new String[OpenAddressing.capacity(names.length)];
+		HASHES = new int[SYMBOLS.length];
+		BYTES = new byte[SYMBOLS.length][];
+		for (final String name : names) {
+			final int slot = OpenAddressing.slot(SYMBOLS, name);
+			SYMBOLS[slot] = name;
+			HASHES[slot] = name.hashCode();
+			BYTES[slot] = name.getBytes(StandardCharsets.US_ASCII);
+		}
+		MAX_LENGTH = Arrays.stream(names).mapToInt(String::length).max().getAsInt();
+		CANDIDATES = new boolean[(MAX_LENGTH + 1) << 7];
+		for (final String name : names) {
+			CANDIDATES[name.length() << 7 | name.charAt(0)] = true;
+		}
+	}
+
+	private ClaimNames() {
+	}
+
+	/**
+	 * @param name claim name
+	 * @return canonical instance for well-known claim names, {@code name} otherwise
+	 */
+	public static String intern(String name) {
+		if (name == null) {
+			return null;
+		}
+		final String symbol = SYMBOLS[OpenAddressing.slot(SYMBOLS, name)];
+		return symbol == null ? name : symbol;
+	}
+
+	/**
+	 * Decodes a claim name, without allocating anything if it is a well-known one.
+	 *
+	 * @param utf8 buffer containing UTF-8 encoded claim name (JSON escapes already resolved)
+	 * @param offset claim name start
+	 * @param length claim name bytes count
+	 * @return canonical instance for well-known claim names, a new {@link String} otherwise
+	 */
+	public static String intern(byte[] utf8, int offset, int length) {
+		if (length == 0 || length > MAX_LENGTH || utf8[offset] < 0 || !CANDIDATES[length << 7 | utf8[offset]]) {
+			return new String(utf8, offset, length, StandardCharsets.UTF_8);
+		}
+		int h = 0;
+		for (int i = offset; i < offset + length; ++i) {
+			if (utf8[i] < 0) {
+				// not ASCII: can't be a symbol
+				return new String(utf8, offset, length, StandardCharsets.UTF_8);
+			}
+			h = 31 * h + utf8[i];
+		}
+		final int mask = SYMBOLS.length - 1;
+		int i = (h ^ (h >>> 16)) & mask;
+		while (SYMBOLS[i] != null) {
+			if (HASHES[i] == h && Arrays.equals(BYTES[i], 0, BYTES[i].length, utf8, offset, offset + length)) {
+				return SYMBOLS[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return new String(utf8, offset, length, StandardCharsets.UTF_8);
+	}
+}
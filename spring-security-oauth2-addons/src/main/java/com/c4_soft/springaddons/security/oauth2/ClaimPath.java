@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Compiled accessor to a nested claim, such as {@code resource_access.my-client.roles}.
+ * </p>
+ * <p>
+ * Paths are dot separated segments (a literal dot in a segment is escaped with a backslash:
+ * {@code resource_access.my\.client.roles}). Segments index {@link Map} values (including json-smart
+ * {@code JSONObject}) by name and {@link List} values (including {@code JSONArray}) by position. Paths are split once,
+ * at compile time, and compiled paths are cached: {@link #compile(String)} on each call is fine.
+ * </p>
+ * <p>
+ * Missing segments, out of range indexes and values of unexpected type all resolve to {@code null}: reading a claim
+ * never throws.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public final class ClaimPath {
+
+	/**
+	 * Paths are usually constants: this is plenty. Once full, paths are compiled on each call instead of being cached
+	 */
+	private static final int CACHE_MAX_SIZE = 512;
+
+	private static final Map<String, ClaimPath> CACHE = new ConcurrentHashMap<>();
+
+	private final String path;
+
+	private final String[] names;
+
+	/**
+	 * List index for each segment, -1 if segment is not a valid index
+	 */
+	private final int[] indexes;
+
+	private ClaimPath(String path) {
+		this.path = path;
+		this.names = split(path);
+		this.indexes = new int[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			Assert.hasLength(names[i], () -> "Empty segment in claim path " + path);
+			names[i] = ClaimNames.intern(names[i]);
+			indexes[i] = parseIndex(names[i]);
+		}
+	}
+
+	/**
+	 * @param path dot separated claim path
+	 * @return compiled (and cached) path
+	 */
+	public static ClaimPath compile(String path) {
+		Assert.hasLength(path, "path can't be empty");
+		final ClaimPath cached = CACHE.get(path);
+		if (cached != null) {
+			return cached;
+		}
+		final ClaimPath compiled = new ClaimPath(path);
+		if (CACHE.size() < CACHE_MAX_SIZE) {
+			CACHE.putIfAbsent(path, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * @param claims root claims
+	 * @return value at this path, null if any segment is missing or can't be walked
+	 */
+	public Object get(Map<String, ?> claims) {
+		Object current = claims;
+		for (int i = 0; i < names.length && current != null; ++i) {
+			if (current instanceof Map<?, ?>) {
+				current = ((Map<?, ?>) current).get(names[i]);
+			} else if (current instanceof List<?>) {
+				final List<?> list = (List<?>) current;
+				current = indexes[i] >= 0 && indexes[i] < list.size() ? list.get(indexes[i]) : null;
+			} else {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @param <T> expected type
+	 * @param claims root claims
+	 * @param type expected type
+	 * @return value at this path, null if it is missing or not a {@code type}
+	 */
+	public <T> T get(Map<String, ?> claims, Class<T> type) {
+		final Object value = get(claims);
+		return type.isInstance(value) ? type.cast(value) : null;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+	private static String[] split(String path) {
+		final List<String> segments = new ArrayList<>();
+		final StringBuilder segment = new StringBuilder();
+		for (int i = 0; i < path.length(); ++i) {
+			final char c = path.charAt(i);
+			if (c == '\\' && i + 1 < path.length() && path.charAt(i + 1) == '.') {
+				segment.append('.');
+				++i;
+			} else if (c == '.') {
+				segments.add(segment.toString());
+				segment.setLength(0);
+			} else {
+				segment.append(c);
+			}
+		}
+		segments.add(segment.toString());
+		return segments.toArray(new String[0]);
+	}
+
+	private static int parseIndex(String segment) {
+		if (segment.length() > 9) {
+			return -1;
+		}
+		for (int i = 0; i < segment.length(); ++i) {
+			if (!Character.isDigit(segment.charAt(i))) {
+				return -1;
+			}
+		}
+		return Integer.parseInt(segment);
+	}
+}
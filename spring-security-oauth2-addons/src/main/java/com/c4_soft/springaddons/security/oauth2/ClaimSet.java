@@ -19,11 +19,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -34,6 +36,11 @@ import org.springframework.util.StringUtils;
  */
 public interface ClaimSet extends Map<String, Object> {
 
+	/**
+	 * Returned by {@link #getAsEpochSecond(String)} for missing claims
+	 */
+	long MISSING_EPOCH_SECOND = Long.MIN_VALUE;
+
 	default String getAsString(String name) {
 		final Object claim = get(name);
 		return claim == null ? null : claim.toString();
@@ -44,8 +51,8 @@ public interface ClaimSet extends Map<String, Object> {
 		if(claim == null) {
 			return null;
 		}
-		if(claim instanceof Long) {
-			return Instant.ofEpochSecond((Long) claim);
+		if(claim instanceof Number) {
+			return Instant.ofEpochSecond(((Number) claim).longValue());
 		}
 		if(claim instanceof Instant) {
 			return (Instant) claim;
@@ -56,6 +63,42 @@ public interface ClaimSet extends Map<String, Object> {
 		throw new RuntimeException("claim " + name + " is of unsupported type " + claim.getClass().getName());
 	}
 
+	/**
+	 * Reads a date claim without boxing nor {@link Instant} creation (unless the claim is an ISO-8601 string)
+	 *
+	 * @param name claim name
+	 * @return seconds since epoch, {@link #MISSING_EPOCH_SECOND} if claim is absent
+	 */
+	default long getAsEpochSecond(String name) {
+		final Object claim = get(name);
+		if(claim == null) {
+			return MISSING_EPOCH_SECOND;
+		}
+		if(claim instanceof Number) {
+			return ((Number) claim).longValue();
+		}
+		if(claim instanceof Instant) {
+			return ((Instant) claim).getEpochSecond();
+		}
+		if(claim instanceof Date) {
+			return Math.floorDiv(((Date) claim).getTime(), 1000L);
+		}
+		if(claim instanceof String) {
+			return Instant.parse((String) claim).getEpochSecond();
+		}
+		throw new RuntimeException("claim " + name + " is of unsupported type " + claim.getClass().getName());
+	}
+
+	/**
+	 * @param nowEpochSecond current time, in seconds since epoch
+	 * @param skew tolerated clock skew, in seconds
+	 * @return true if {@code exp} claim is present and {@code nowEpochSecond - skew} is at or after it
+	 */
+	default boolean isExpired(long nowEpochSecond, long skew) {
+		final long exp = getAsEpochSecond(IdTokenClaimNames.EXP);
+		return exp != MISSING_EPOCH_SECOND && nowEpochSecond - skew >= exp;
+	}
+
 	default Set<String> getAsStringSet(String name) {
 		final Object claim = get(name);
 		if(claim == null) {
@@ -67,6 +110,71 @@ public interface ClaimSet extends Map<String, Object> {
 		return Stream.of(claim.toString().split(" ")).collect(Collectors.toSet());
 	}
 
+	/**
+	 * @return immutable set of scopes from {@code scope} claim (or {@code scp} if there is no {@code scope}), empty if
+	 *         none
+	 */
+	default Set<String> getScopes() {
+		return Scopes.parse(get(scopeClaimName()));
+	}
+
+	/**
+	 * @param vocabulary registered scopes
+	 * @return {@link #getScopes()} encoded against {@code vocabulary}, for bitwise checks
+	 */
+	default NameBitSet getScopes(NameVocabulary vocabulary) {
+		return vocabulary.encode(getScopes());
+	}
+
+	/**
+	 * Scans scopes claim without allocating anything (neither tokens nor set)
+	 *
+	 * @param scope scope to look for
+	 * @return true if {@code scope} is one of {@link #getScopes()}
+	 */
+	default boolean hasScope(String scope) {
+		return Scopes.contains(get(scopeClaimName()), scope);
+	}
+
+	/**
+	 * Same as {@link #hasScope(String)} for each of provided scopes. Varargs array is the only allocation: hoist it to a
+	 * constant on hot paths.
+	 *
+	 * @param scopes scopes to look for
+	 * @return true if at least one of {@code scopes} is one of {@link #getScopes()}
+	 */
+	default boolean hasAnyScope(String... scopes) {
+		final Object claim = get(scopeClaimName());
+		for (final String scope : scopes) {
+			if (Scopes.contains(claim, scope)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String scopeClaimName() {
+		return containsKey(ClaimNames.SCOPE) ? ClaimNames.SCOPE : ClaimNames.SCP;
+	}
+
+	/**
+	 * @param path dot separated path to a nested claim (see {@link ClaimPath})
+	 * @return nested claim value, null if missing
+	 */
+	default Object getByPath(String path) {
+		return ClaimPath.compile(path).get(this);
+	}
+
+	/**
+	 * @param <T> expected type
+	 * @param path dot separated path to a nested claim (see {@link ClaimPath})
+	 * @param type expected type
+	 * @return nested claim value, null if missing or not a {@code type}
+	 */
+	default <T> T getByPath(String path, Class<T> type) {
+		return ClaimPath.compile(path).get(this, type);
+	}
+
 	default URI getAsUri(String name) throws URISyntaxException {
 		final Object claim = get(name);
 		if(claim == null) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Immutable claim-set storing keys and values in two parallel arrays with open-addressing (linear probing).
+ * </p>
+ * <p>
+ * Compared to an unmodifiable {@link java.util.HashMap}, there is no per-entry node and no wrapper: just this instance
+ * and two arrays (less than half the heap, 3 objects whatever the claims count). Claim names are interned with
+ * {@link ClaimNames} so that lookups with well-known names constants match by identity. Mutators throw
+ * {@link UnsupportedOperationException}. Null values are accepted, null keys are not.
+ * </p>
+ * <p>
+ * This is a footprint optimization, not a lookup one: {@link #get(Object)} is slightly slower than {@code HashMap} one
+ * (see {@code ClaimLookupBenchmark}). It is opt-in: {@link UnmodifiableClaimSet} (and so {@code OidcId}) keeps a
+ * {@code HashMap} copy, unless given a {@link CompactClaimSet}.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CompactClaimSet extends AbstractMap<String, Object> implements ClaimSet {
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private final int size;
+
+	public CompactClaimSet(Map<String, ?> claims) {
+		super();
+		Assert.notNull(claims, "claims can't be null");
+		final int capacity = OpenAddressing.capacity(claims.size());
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		int count = 0;
+		for (final Map.Entry<String, ?> claim : claims.entrySet()) {
+			Assert.notNull(claim.getKey(), "claim name can't be null");
+			final String name = ClaimNames.intern(claim.getKey());
+			final int i = slot(name);
+			if (keys[i] == null) {
+				++count;
+			}
+			keys[i] = name;
+			values[i] = claim.getValue();
+		}
+		this.size = count;
+	}
+
+	/**
+	 * @param claims claims to store
+	 * @return {@code claims} if it already is a {@link CompactClaimSet}, a compact copy otherwise
+	 */
+	public static CompactClaimSet of(Map<String, ?> claims) {
+		return claims instanceof CompactClaimSet ? (CompactClaimSet) claims : new CompactClaimSet(claims);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && keys[slot((String) key)] != null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		return key instanceof String ? values[slot((String) key)] : null;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private int slot(String key) {
+		return OpenAddressing.slot(keys, key);
+	}
+
+	private final class EntryIterator implements Iterator<Entry<String, Object>> {
+		private int next = advance(0);
+
+		@Override
+		public boolean hasNext() {
+			return next < keys.length;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Entry<String, Object> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+			next = advance(next + 1);
+			return entry;
+		}
+
+		private int advance(int from) {
+			int i = from;
+			while (i < keys.length && keys[i] == null) {
+				++i;
+			}
+			return i;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Flyweight {@link GrantedAuthority} factory for authorities built from a name prefix and token roles (or scopes).
+ * </p>
+ * <p>
+ * Two bounded, thread-safe caches:
+ * </p>
+ * <ul>
+ * <li>authorities by role: each prefixed authority is created once, further calls neither concatenate nor allocate.
+ * Once full, new authorities are created on each call (roles are a bounded vocabulary: this should not happen)</li>
+ * <li>immutable authorities sets by exact roles list: users with the same roles (in the same order) share the same
+ * set. Lookups are done with the claim list itself (a JSON array for instance), only misses copy it. Once full, new
+ * sets are built on each call (cached ones are kept: clearing would make all requests miss at once)</li>
+ * </ul>
+ * <p>
+ * When a {@link RoleHierarchyClosure} is provided, sets are expanded with all authorities reachable from each role.
+ * Expansions are precomputed at construction (one shared authority array per hierarchy node), so that expanding a role
+ * is a single lookup.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class GrantedAuthoritiesCache {
+
+	private final String prefix;
+
+	private final UnaryOperator<String> transformation;
+
+	private final int maxAuthorities;
+
+	private final int maxSets;
+
+	private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+	private final Map<String, GrantedAuthority[]> expansions = new ConcurrentHashMap<>();
+
+	private final Map<List<?>, Set<GrantedAuthority>> sets = new ConcurrentHashMap<>();
+
+	private final RoleHierarchyClosure hierarchy;
+
+	/**
+	 * Expanded authorities, indexed by hierarchy id
+	 */
+	private final GrantedAuthority[][] reachable;
+
+	/**
+	 * Hierarchy authorities by name, so that authorities created for roles are the same instances as in expansions
+	 */
+	private final Map<String, GrantedAuthority> hierarchyAuthorities;
+
+	/**
+	 * @param prefix prepended to each role, {@code "ROLE_"} for instance (may be empty)
+	 * @param maxAuthorities maximum number of cached authorities
+	 * @param maxSets maximum number of cached authorities sets
+	 */
+	public GrantedAuthoritiesCache(String prefix, int maxAuthorities, int maxSets) {
+		this(prefix, UnaryOperator.identity(), maxAuthorities, maxSets);
+	}
+
+	/**
+	 * @param prefix prepended to each role, {@code "ROLE_"} for instance (may be empty)
+	 * @param transformation applied to roles before prefixing ({@code String::toUpperCase} for instance). Applied once
+	 *        per role, when the authority is cached
+	 * @param maxAuthorities maximum number of cached authorities
+	 * @param maxSets maximum number of cached authorities sets
+	 */
+	public GrantedAuthoritiesCache(
+			String prefix,
+			UnaryOperator<String> transformation,
+			int maxAuthorities,
+			int maxSets) {
+		this(prefix, transformation, RoleHierarchyClosure.none(), maxAuthorities, maxSets);
+	}
+
+	/**
+	 * @param prefix prepended to each role, {@code "ROLE_"} for instance (may be empty)
+	 * @param transformation applied to roles before prefixing ({@code String::toUpperCase} for instance). Applied once
+	 *        per role, when the authority is cached
+	 * @param hierarchy expansion applied to authorities names (prefix included) when building sets
+	 * @param maxAuthorities maximum number of cached authorities
+	 * @param maxSets maximum number of cached authorities sets
+	 */
+	public GrantedAuthoritiesCache(
+			String prefix,
+			UnaryOperator<String> transformation,
+			RoleHierarchyClosure hierarchy,
+			int maxAuthorities,
+			int maxSets) {
+		Assert.notNull(prefix, "prefix can't be null");
+		Assert.notNull(transformation, "transformation can't be null");
+		Assert.isTrue(maxAuthorities >= 0, "maxAuthorities can't be negative");
+		Assert.isTrue(maxSets >= 0, "maxSets can't be negative");
+		this.prefix = prefix;
+		this.transformation = transformation;
+		this.maxAuthorities = maxAuthorities;
+		this.maxSets = maxSets;
+		Assert.notNull(hierarchy, "hierarchy can't be null");
+		this.hierarchy = hierarchy;
+		this.hierarchyAuthorities = new HashMap<>(hierarchy.size() * 2);
+		for (int id = 0; id < hierarchy.size(); ++id) {
+			hierarchyAuthorities.put(hierarchy.nameAt(id), new SimpleGrantedAuthority(hierarchy.nameAt(id)));
+		}
+		this.reachable = new GrantedAuthority[hierarchy.size()][];
+		for (int id = 0; id < hierarchy.size(); ++id) {
+			final String[] names = hierarchy.reachableAt(id);
+			reachable[id] = new GrantedAuthority[names.length];
+			for (int i = 0; i < names.length; ++i) {
+				reachable[id][i] = hierarchyAuthorities.get(names[i]);
+			}
+		}
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * @param role role (or scope) name, without prefix
+	 * @return the shared authority for {@code prefix + transformation(role)}
+	 */
+	public GrantedAuthority authority(String role) {
+		final GrantedAuthority cached = authorities.get(role);
+		if (cached != null) {
+			return cached;
+		}
+		final String name = prefix + transformation.apply(role);
+		final GrantedAuthority inHierarchy = hierarchyAuthorities.get(name);
+		final GrantedAuthority created = inHierarchy == null ? new SimpleGrantedAuthority(name) : inHierarchy;
+		if (authorities.size() >= maxAuthorities) {
+			return created;
+		}
+		final GrantedAuthority previous = authorities.putIfAbsent(role, created);
+		return previous == null ? created : previous;
+	}
+
+	/**
+	 * @param roles roles (or scopes) claim value, elements are converted with {@code toString()}, nulls are ignored
+	 * @return immutable set of prefixed authorities, shared by all identical {@code roles} lists
+	 */
+	public Set<GrantedAuthority> authorities(Collection<?> roles) {
+		if (roles == null || roles.isEmpty()) {
+			return Set.of();
+		}
+		if (!(roles instanceof List<?>)) {
+			return toAuthorities(roles);
+		}
+		final Set<GrantedAuthority> cached = sets.get(roles);
+		if (cached != null) {
+			return cached;
+		}
+		final List<String> key = new ArrayList<>(roles.size());
+		for (final Object role : roles) {
+			if (role != null) {
+				key.add(role.toString());
+			}
+		}
+		final Set<GrantedAuthority> created = toAuthorities(key);
+		if (sets.size() >= maxSets) {
+			return created;
+		}
+		// immutable copy as key: caller list could be modified afterwards
+		final Set<GrantedAuthority> previous = sets.putIfAbsent(List.copyOf(key), created);
+		return previous == null ? created : previous;
+	}
+
+	/**
+	 * @param role role (or scope) name, without prefix
+	 * @return the shared authority for {@code role} and all the authorities it reaches in the hierarchy. Do not modify.
+	 */
+	private GrantedAuthority[] expansion(String role) {
+		final GrantedAuthority[] cached = expansions.get(role);
+		if (cached != null) {
+			return cached;
+		}
+		final GrantedAuthority authority = authority(role);
+		final int id = hierarchy.indexOf(authority.getAuthority());
+		final GrantedAuthority[] created = id < 0 ? new GrantedAuthority[] { authority } : reachable[id];
+		if (expansions.size() < maxAuthorities) {
+			expansions.putIfAbsent(role, created);
+		}
+		return created;
+	}
+
+	private Set<GrantedAuthority> toAuthorities(Collection<?> roles) {
+		if (hierarchy.isEmpty()) {
+			final List<GrantedAuthority> result = new ArrayList<>(roles.size());
+			for (final Object role : roles) {
+				if (role != null) {
+					result.add(authority(role.toString()));
+				}
+			}
+			return Set.copyOf(result);
+		}
+		final Set<GrantedAuthority> result = new HashSet<>();
+		for (final Object role : roles) {
+			if (role != null) {
+				Collections.addAll(result, expansion(role.toString()));
+			}
+		}
+		return Set.copyOf(result);
+	}
+}
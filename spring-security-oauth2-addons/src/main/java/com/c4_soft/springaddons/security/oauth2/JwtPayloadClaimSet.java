@@ -0,0 +1,456 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.util.Assert;
+
+import net.minidev.json.parser.JSONParser;
+import net.minidev.json.parser.ParseException;
+
+/**
+ * <p>
+ * Immutable claim-set backed by the raw (base64url decoded) JSON payload of a JWT.
+ * </p>
+ * <p>
+ * On creation, top-level claims are indexed with a single scan of the payload: only names are decoded (and interned
+ * with {@link ClaimNames}) and values offsets recorded. Values are parsed when first accessed (and only once): strings
+ * directly, other values with the same json-smart settings as Nimbus (so that nested objects and arrays are
+ * {@link net.minidev.json.JSONObject} and {@link net.minidev.json.JSONArray} as in {@code Jwt} claims). This makes
+ * reading a few claims of a big token (hundreds of {@code resource_access} roles for instance) cheap. Malformed payloads
+ * are rejected with an {@link IllegalArgumentException}.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class JwtPayloadClaimSet extends AbstractMap<String, Object> implements ClaimSet {
+
+	/**
+	 * Same as Nimbus {@code JSONObjectUtils}
+	 */
+	private static final int JSON_PARSER_MODE = JSONParser.USE_HI_PRECISION_FLOAT | JSONParser.ACCEPT_TAILLING_SPACE;
+
+	/**
+	 * Stands for "parsed to null" ({@code null} meaning "not parsed yet")
+	 */
+	private static final Object NULL_VALUE = new Object();
+
+	private final byte[] json;
+
+	private final String[] keys;
+
+	private final int[] valueStarts;
+
+	private final int[] valueEnds;
+
+	private final AtomicReferenceArray<Object> values;
+
+	private final int size;
+
+	/**
+	 * @param json JWT payload: UTF-8 JSON object
+	 */
+	public JwtPayloadClaimSet(byte[] json) {
+		super();
+		Assert.notNull(json, "json can't be null");
+		this.json = json;
+
+		final Scanner scanner = new Scanner(json);
+		final List<String> names = new ArrayList<>();
+		final List<int[]> bounds = new ArrayList<>();
+		scanner.scanObject(names, bounds);
+
+		final int capacity = OpenAddressing.capacity(names.size());
+		this.keys = new String[capacity];
+		this.valueStarts = new int[capacity];
+		this.valueEnds = new int[capacity];
+		this.values = new AtomicReferenceArray<>(capacity);
+		int count = 0;
+		for (int i = 0; i < names.size(); ++i) {
+			final int slot = OpenAddressing.slot(keys, names.get(i));
+			if (keys[slot] == null) {
+				++count;
+			}
+			// as with most JSON parsers, last duplicate wins
+			keys[slot] = names.get(i);
+			valueStarts[slot] = bounds.get(i)[0];
+			valueEnds[slot] = bounds.get(i)[1];
+		}
+		this.size = count;
+	}
+
+	/**
+	 * @param tokenValue serialized JWT ({@code header.payload.signature})
+	 * @return claim-set backed by decoded payload
+	 */
+	public static JwtPayloadClaimSet fromTokenValue(String tokenValue) {
+		Assert.hasLength(tokenValue, "tokenValue can't be empty");
+		final int payloadStart = tokenValue.indexOf('.') + 1;
+		final int payloadEnd = tokenValue.indexOf('.', payloadStart);
+		if (payloadStart == 0 || payloadEnd < 0) {
+			throw new IllegalArgumentException("Not a serialized JWT");
+		}
+		return new JwtPayloadClaimSet(
+				Base64.getUrlDecoder()
+						.decode(tokenValue.substring(payloadStart, payloadEnd).getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && keys[OpenAddressing.slot(keys, (String) key)] != null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		final int slot = OpenAddressing.slot(keys, (String) key);
+		return keys[slot] == null ? null : valueAt(slot);
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private Object valueAt(int slot) {
+		Object value = values.get(slot);
+		if (value == null) {
+			final Object parsed = parseValue(valueStarts[slot], valueEnds[slot]);
+			values.compareAndSet(slot, null, parsed == null ? NULL_VALUE : parsed);
+			value = values.get(slot);
+		}
+		return value == NULL_VALUE ? null : value;
+	}
+
+	private Object parseValue(int start, int end) {
+		if (json[start] == '"') {
+			return new Scanner(json, start).readString();
+		}
+		if (matches(start, end, "true")) {
+			return Boolean.TRUE;
+		}
+		if (matches(start, end, "false")) {
+			return Boolean.FALSE;
+		}
+		if (matches(start, end, "null")) {
+			return null;
+		}
+		try {
+			return new JSONParser(JSON_PARSER_MODE)
+					.parse(new String(json, start, end - start, StandardCharsets.UTF_8));
+		} catch (final ParseException e) {
+			// no cause: json-smart messages quote the offending payload token, which must not end up in logs
+			throw new IllegalArgumentException(
+					String.format(
+							"Malformed JWT payload at offset %d (json-smart error type %d)",
+							start + e.getPosition(),
+							e.getErrorType()));
+		}
+	}
+
+	private boolean matches(int start, int end, String literal) {
+		if (end - start != literal.length()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); ++i) {
+			if (json[start + i] != literal.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final class EntryIterator implements Iterator<Entry<String, Object>> {
+		private int next = advance(0);
+
+		@Override
+		public boolean hasNext() {
+			return next < keys.length;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Entry<String, Object> entry = new SimpleImmutableEntry<>(keys[next], valueAt(next));
+			next = advance(next + 1);
+			return entry;
+		}
+
+		private int advance(int from) {
+			int i = from;
+			while (i < keys.length && keys[i] == null) {
+				++i;
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Minimal JSON scanner: decodes strings and skips over any other value
+	 */
+	private static final class Scanner {
+		private final byte[] json;
+
+		private int pos;
+
+		Scanner(byte[] json) {
+			this(json, 0);
+		}
+
+		Scanner(byte[] json, int pos) {
+			this.json = json;
+			this.pos = pos;
+		}
+
+		/**
+		 * @param names collects top-level member names
+		 * @param bounds collects {start, end} offsets of top-level member values
+		 */
+		void scanObject(List<String> names, List<int[]> bounds) {
+			skipWhitespaces();
+			expect('{');
+			skipWhitespaces();
+			if (peek() == '}') {
+				++pos;
+			} else {
+				do {
+					skipWhitespaces();
+					names.add(readName());
+					skipWhitespaces();
+					expect(':');
+					skipWhitespaces();
+					final int start = pos;
+					skipValue();
+					bounds.add(new int[] { start, pos });
+					skipWhitespaces();
+				} while (tryConsume(','));
+				expect('}');
+			}
+			skipWhitespaces();
+			if (pos != json.length) {
+				throw malformed("end of payload");
+			}
+		}
+
+		/**
+		 * @return claim name, interned with {@link ClaimNames}
+		 */
+		String readName() {
+			expect('"');
+			final int start = pos;
+			while (peek() != '"') {
+				if (json[pos] == '\\') {
+					return ClaimNames.intern(readEscapedString(start));
+				}
+				++pos;
+			}
+			return ClaimNames.intern(json, start, pos++ - start);
+		}
+
+		String readString() {
+			expect('"');
+			final int start = pos;
+			while (peek() != '"') {
+				if (json[pos] == '\\') {
+					return readEscapedString(start);
+				}
+				++pos;
+			}
+			return new String(json, start, pos++ - start, StandardCharsets.UTF_8);
+		}
+
+		private String readEscapedString(int start) {
+			final StringBuilder sb = new StringBuilder(new String(json, start, pos - start, StandardCharsets.UTF_8));
+			int chunkStart = pos;
+			while (peek() != '"') {
+				if (json[pos] != '\\') {
+					++pos;
+					continue;
+				}
+				sb.append(new String(json, chunkStart, pos - chunkStart, StandardCharsets.UTF_8));
+				++pos;
+				final byte escaped = peek();
+				++pos;
+				switch (escaped) {
+				case '"':
+				case '\\':
+				case '/':
+					sb.append((char) escaped);
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'u':
+					if (pos + 4 > json.length) {
+						throw malformed("4 hexadecimal digits");
+					}
+					try {
+						sb.append((char) Integer.parseInt(new String(json, pos, 4, StandardCharsets.US_ASCII), 16));
+					} catch (final NumberFormatException e) {
+						throw malformed("4 hexadecimal digits");
+					}
+					pos += 4;
+					break;
+				default:
+					throw malformed("escape sequence");
+				}
+				chunkStart = pos;
+			}
+			sb.append(new String(json, chunkStart, pos++ - chunkStart, StandardCharsets.UTF_8));
+			return sb.toString();
+		}
+
+		private void skipValue() {
+			switch (peek()) {
+			case '"':
+				skipString();
+				break;
+			case '{':
+			case '[':
+				skipStructure();
+				break;
+			default:
+				final int start = pos;
+				while (pos < json.length && !isDelimiter(json[pos])) {
+					++pos;
+				}
+				if (pos == start) {
+					throw malformed("value");
+				}
+			}
+		}
+
+		private void skipString() {
+			expect('"');
+			while (peek() != '"') {
+				pos += json[pos] == '\\' ? 2 : 1;
+			}
+			++pos;
+		}
+
+		private void skipStructure() {
+			int depth = 0;
+			do {
+				switch (peek()) {
+				case '"':
+					skipString();
+					continue;
+				case '{':
+				case '[':
+					++depth;
+					break;
+				case '}':
+				case ']':
+					--depth;
+					break;
+				default:
+					break;
+				}
+				++pos;
+			} while (depth > 0);
+		}
+
+		private void skipWhitespaces() {
+			while (pos < json.length && isWhitespace(json[pos])) {
+				++pos;
+			}
+		}
+
+		private boolean tryConsume(char c) {
+			if (pos < json.length && json[pos] == c) {
+				++pos;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (peek() != c) {
+				throw malformed("'" + c + "'");
+			}
+			++pos;
+		}
+
+		private byte peek() {
+			if (pos >= json.length) {
+				throw malformed("more characters");
+			}
+			return json[pos];
+		}
+
+		/**
+		 * Payload content is deliberately not part of the message: exception messages end up in logs, tokens must not
+		 */
+		private IllegalArgumentException malformed(String expected) {
+			return new IllegalArgumentException(
+					String.format("Malformed JWT payload at offset %d: expected %s", pos, expected));
+		}
+
+		private static boolean isWhitespace(byte b) {
+			return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+		}
+
+		private static boolean isDelimiter(byte b) {
+			return b == ',' || b == '}' || b == ']' || isWhitespace(b);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * <p>
+ * Immutable set of names encoded against a {@link NameVocabulary}: a bit per vocabulary name (in a {@code long[]}),
+ * plus a plain set of strings for names out of the vocabulary (usually empty).
+ * </p>
+ * <p>
+ * {@link #contains(Object)} is a table lookup and a bit test. {@link #containsAll(NameBitSet)} and
+ * {@link #containsAny(NameBitSet)} between sets of the same vocabulary are bitwise operations on a few words (200
+ * names fit in 4 {@code long}), which makes it worth encoding required names once and then testing each token against
+ * it. None of those allocate.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public final class NameBitSet extends AbstractSet<String> {
+
+	private final NameVocabulary vocabulary;
+
+	private final long[] bits;
+
+	private final Set<String> others;
+
+	private final int size;
+
+	NameBitSet(NameVocabulary vocabulary, long[] bits, Set<String> others) {
+		super();
+		this.vocabulary = vocabulary;
+		this.bits = bits;
+		this.others = others;
+		int count = others.size();
+		for (final long word : bits) {
+			count += Long.bitCount(word);
+		}
+		this.size = count;
+	}
+
+	public NameVocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+		final int index = vocabulary.indexOf((String) o);
+		return index < 0 ? others.contains(o) : (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @param names names to look for
+	 * @return true if at least one of {@code names} is in this set
+	 */
+	public boolean containsAny(String... names) {
+		for (final String name : names) {
+			if (contains(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param names names to look for
+	 * @return true if all of {@code names} are in this set
+	 */
+	public boolean containsAll(String... names) {
+		for (final String name : names) {
+			if (!contains(name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param other set to compare with, bitwise if it is from the same vocabulary
+	 * @return true if at least one of {@code other} elements is in this set
+	 */
+	public boolean containsAny(NameBitSet other) {
+		if (other.vocabulary != vocabulary) {
+			for (final String name : other) {
+				if (contains(name)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for (int i = 0; i < bits.length; ++i) {
+			if ((bits[i] & other.bits[i]) != 0) {
+				return true;
+			}
+		}
+		if (!others.isEmpty()) {
+			for (final String name : other.others) {
+				if (others.contains(name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param other set to compare with, bitwise if it is from the same vocabulary
+	 * @return true if all of {@code other} elements are in this set
+	 */
+	public boolean containsAll(NameBitSet other) {
+		if (other.vocabulary != vocabulary) {
+			return super.containsAll(other);
+		}
+		for (int i = 0; i < bits.length; ++i) {
+			if ((bits[i] & other.bits[i]) != other.bits[i]) {
+				return false;
+			}
+		}
+		return other.others.isEmpty() || others.containsAll(other.others);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		return c instanceof NameBitSet ? containsAll((NameBitSet) c) : super.containsAll(c);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof NameBitSet && ((NameBitSet) o).vocabulary == vocabulary) {
+			final NameBitSet other = (NameBitSet) o;
+			return Arrays.equals(bits, other.bits) && others.equals(other.others);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<>() {
+			private int next = nextIndex(0);
+
+			private final Iterator<String> othersIterator = others.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0 || othersIterator.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if (next < 0) {
+					return othersIterator.next();
+				}
+				final String name = vocabulary.nameAt(next);
+				next = nextIndex(next + 1);
+				return name;
+			}
+		};
+	}
+
+	private int nextIndex(int from) {
+		int word = from >>> 6;
+		if (word >= bits.length) {
+			return -1;
+		}
+		long remaining = bits[word] & (-1L << from);
+		while (remaining == 0) {
+			if (++word == bits.length) {
+				return -1;
+			}
+			remaining = bits[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(remaining);
+	}
+}
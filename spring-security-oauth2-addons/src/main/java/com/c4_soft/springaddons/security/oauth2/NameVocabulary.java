@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Immutable registry of the scopes and roles (or any other names) an application checks, declared once at startup
+ * (usually as a {@code @Bean}). Each name is given an index, so that sets of names can be encoded as bitsets
+ * ({@link NameBitSet}) and checks turned into bitwise operations.
+ * </p>
+ * <p>
+ * Typical usage is to encode required names once, and then each token scopes or authorities:
+ * </p>
+ *
+ * <pre>
+ * final NameBitSet required = vocabulary.encode("message:read", "message:write");
+ * ...
+ * if (claims.getScopes(vocabulary).containsAll(required)) {
+ * </pre>
+ *
+ * <p>
+ * Names out of the vocabulary are not lost: they are kept as strings in encoded sets.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public final class NameVocabulary {
+
+	private final String[] names;
+
+	private final String[] keys;
+
+	private final int[] indexes;
+
+	private final NameBitSet empty;
+
+	/**
+	 * @param names names to register (duplicates are ignored), indexed in iteration order
+	 */
+	public NameVocabulary(Collection<String> names) {
+		Assert.notNull(names, "names can't be null");
+		final Set<String> distinct = new LinkedHashSet<>(names);
+		Assert.isTrue(!distinct.contains(null), "names can't contain null");
+		this.names = distinct.toArray(new String[0]);
+		this.keys = new String[OpenAddressing.capacity(this.names.length)];
+		this.indexes = new int[keys.length];
+		for (int i = 0; i < this.names.length; ++i) {
+			final int slot = OpenAddressing.slot(keys, this.names[i]);
+			keys[slot] = this.names[i];
+			indexes[slot] = i;
+		}
+		this.empty = new NameBitSet(this, new long[words()], Set.of());
+	}
+
+	public static NameVocabulary of(String... names) {
+		return new NameVocabulary(Arrays.asList(names));
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param name a name
+	 * @return {@code name} index in the vocabulary, -1 if it is not part of it
+	 */
+	public int indexOf(String name) {
+		if (name == null) {
+			return -1;
+		}
+		final int slot = OpenAddressing.slot(keys, name);
+		return keys[slot] == null ? -1 : indexes[slot];
+	}
+
+	public String nameAt(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @param names names to encode
+	 * @return immutable set of {@code names}
+	 */
+	public NameBitSet encode(String... names) {
+		return encode(Arrays.asList(names));
+	}
+
+	/**
+	 * @param names names to encode, null elements are ignored
+	 * @return immutable set of {@code names}
+	 */
+	public NameBitSet encode(Iterable<String> names) {
+		if (names == null) {
+			return empty;
+		}
+		final long[] bits = new long[words()];
+		Set<String> others = null;
+		for (final String name : names) {
+			if (name == null) {
+				continue;
+			}
+			final int index = indexOf(name);
+			if (index >= 0) {
+				bits[index >>> 6] |= 1L << index;
+			} else {
+				if (others == null) {
+					others = new LinkedHashSet<>();
+				}
+				others.add(name);
+			}
+		}
+		return new NameBitSet(this, bits, others == null ? Set.of() : Set.copyOf(others));
+	}
+
+	/**
+	 * @param authorities granted authorities (for instance {@code Authentication::getAuthorities})
+	 * @return immutable set of authorities names
+	 */
+	public NameBitSet encodeAuthorities(Collection<? extends GrantedAuthority> authorities) {
+		if (authorities == null || authorities.isEmpty()) {
+			return empty;
+		}
+		final String[] authorityNames = new String[authorities.size()];
+		int i = 0;
+		for (final GrantedAuthority authority : authorities) {
+			authorityNames[i++] = authority.getAuthority();
+		}
+		return encode(authorityNames);
+	}
+
+	/**
+	 * @return empty set bound to this vocabulary
+	 */
+	public NameBitSet empty() {
+		return empty;
+	}
+
+	int words() {
+		return (names.length + 63) >>> 6;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+/**
+ * Linear probing over a power of two sized array of names, shared by array-backed claim-sets and {@link NameVocabulary}
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+final class OpenAddressing {
+
+	private OpenAddressing() {
+	}
+
+	/**
+	 * @param size number of entries
+	 * @return smallest power of two keeping load factor under 3/4 (and at least one empty slot to end probes)
+	 */
+	static int capacity(int size) {
+		int capacity = 2;
+		while (capacity * 3 < size * 4 || capacity <= size) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * @param keys hash table, with length a power of two and at least one null slot
+	 * @param key claim name
+	 * @return index of the slot holding {@code key} or, if absent, of the empty slot ending the probe sequence
+	 */
+	static int slot(String[] keys, String key) {
+		final int mask = keys.length - 1;
+		final int h = key.hashCode();
+		int i = (h ^ (h >>> 16)) & mask;
+		// identity first: stored names are interned (see ClaimNames) and queries mostly use constants
+		while (keys[i] != null && keys[i] != key && !keys[i].equals(key)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+}
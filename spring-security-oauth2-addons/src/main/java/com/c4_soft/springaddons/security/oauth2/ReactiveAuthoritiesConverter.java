@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.Collection;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Reactive authorities source, for reactive authentication converters (see
+ * {@link com.c4_soft.springaddons.security.oauth2.keycloak.ReactiveKeycloakOidcIdAuthenticationConverter} for
+ * instance).
+ * </p>
+ * <p>
+ * Synchronous converters are adapted with {@link #of(Converter)} when they are CPU only (reading token claims as
+ * {@link com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakEmbeddedAuthoritiesConverter} does) or with
+ * {@link #offloaded(Converter)} when they block (JDBC, JPA, blocking HTTP client, ...) so that event-loop threads never
+ * wait for I/O.
+ * </p>
+ * <p>
+ * Requires {@code io.projectreactor:reactor-core} on the class-path (optional dependency of this lib).
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface ReactiveAuthoritiesConverter extends Converter<Jwt, Mono<Collection<GrantedAuthority>>> {
+
+	/**
+	 * @param converter non-blocking synchronous converter
+	 * @return reactive converter running {@code converter} on subscribing thread
+	 */
+	static ReactiveAuthoritiesConverter of(Converter<Jwt, Collection<GrantedAuthority>> converter) {
+		Assert.notNull(converter, "converter can't be null");
+		return jwt -> Mono.fromSupplier(() -> converter.convert(jwt));
+	}
+
+	/**
+	 * @param converter blocking synchronous converter
+	 * @return reactive converter running {@code converter} on Reactor bounded elastic scheduler
+	 */
+	static ReactiveAuthoritiesConverter offloaded(Converter<Jwt, Collection<GrantedAuthority>> converter) {
+		return offloaded(converter, Schedulers.boundedElastic());
+	}
+
+	/**
+	 * @param converter blocking synchronous converter
+	 * @param scheduler where to run {@code converter}. Should be bounded (in threads and queued tasks) so that a slow
+	 *        authorities source results in back-pressure instead of unbounded thread creation
+	 * @return reactive converter running {@code converter} on {@code scheduler}
+	 */
+	static ReactiveAuthoritiesConverter offloaded(
+			Converter<Jwt, Collection<GrantedAuthority>> converter,
+			Scheduler scheduler) {
+		Assert.notNull(converter, "converter can't be null");
+		Assert.notNull(scheduler, "scheduler can't be null");
+		return jwt -> Mono.fromCallable(() -> converter.convert(jwt)).subscribeOn(scheduler);
+	}
+}
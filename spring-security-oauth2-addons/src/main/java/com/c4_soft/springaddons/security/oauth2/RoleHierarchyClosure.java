@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Role hierarchy with transitive closure computed once, at construction: each authority of the hierarchy gets an id
+ * and the array of all authorities it reaches (itself included) is stored at this index. Expanding an authority is
+ * then a single lookup, instead of the graph traversal Spring's {@code RoleHierarchyImpl} does on each access
+ * decision.
+ * </p>
+ * <p>
+ * Hierarchies apply to authorities names as emitted by converters (prefix included):
+ * </p>
+ *
+ * <pre>
+ * RoleHierarchyClosure.parse("ROLE_ADMIN &gt; ROLE_MANAGER &gt; ROLE_USER\nROLE_AUDITOR &gt; ROLE_USER")
+ * </pre>
+ * <p>
+ * Provide it to a {@link GrantedAuthoritiesCache} so that converters directly emit expanded (and shared) authorities
+ * sets. Cycles are rejected.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public final class RoleHierarchyClosure {
+
+	private static final int VISITING = 1;
+
+	private static final int DONE = 2;
+
+	private static final RoleHierarchyClosure NONE = new RoleHierarchyClosure(Map.of());
+
+	private final Map<String, Integer> ids;
+
+	private final String[] names;
+
+	private final String[][] reachable;
+
+	private RoleHierarchyClosure(Map<String, ? extends Collection<String>> directlyReachable) {
+		final Map<String, Set<String>> edges = new LinkedHashMap<>();
+		directlyReachable.forEach((higher, lowers) -> {
+			Assert.hasText(higher, "role can't be empty");
+			final Set<String> targets = edges.computeIfAbsent(higher, k -> new LinkedHashSet<>());
+			for (final String lower : lowers) {
+				Assert.hasText(lower, "role can't be empty");
+				targets.add(lower);
+				edges.computeIfAbsent(lower, k -> new LinkedHashSet<>());
+			}
+		});
+
+		this.names = edges.keySet().toArray(new String[0]);
+		final Map<String, Integer> idsByName = new HashMap<>(names.length * 2);
+		for (int i = 0; i < names.length; ++i) {
+			idsByName.put(names[i], i);
+		}
+		this.ids = Map.copyOf(idsByName);
+
+		this.reachable = new String[names.length][];
+		final int[] state = new int[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			close(i, edges, state);
+		}
+	}
+
+	/**
+	 * @param directlyReachable authorities directly reachable from each authority (its direct "children")
+	 * @return hierarchy closure
+	 * @throws IllegalArgumentException if the hierarchy has a cycle
+	 */
+	public static RoleHierarchyClosure of(Map<String, ? extends Collection<String>> directlyReachable) {
+		Assert.notNull(directlyReachable, "directlyReachable can't be null");
+		return directlyReachable.isEmpty() ? NONE : new RoleHierarchyClosure(directlyReachable);
+	}
+
+	/**
+	 * @param hierarchy same format as Spring's {@code RoleHierarchyImpl}: one {@code higher > lower} relation per line,
+	 *        relations can be chained ({@code ROLE_A > ROLE_B > ROLE_C})
+	 * @return hierarchy closure
+	 * @throws IllegalArgumentException if the hierarchy is malformed or has a cycle
+	 */
+	public static RoleHierarchyClosure parse(String hierarchy) {
+		Assert.notNull(hierarchy, "hierarchy can't be null");
+		final Map<String, List<String>> directlyReachable = new LinkedHashMap<>();
+		for (final String line : hierarchy.split("\\R")) {
+			if (line.isBlank()) {
+				continue;
+			}
+			final String[] chain = line.split(">");
+			Assert.isTrue(chain.length > 1, () -> "Malformed role hierarchy line: " + line);
+			for (int i = 0; i < chain.length - 1; ++i) {
+				final String higher = chain[i].strip();
+				final String lower = chain[i + 1].strip();
+				Assert.isTrue(
+						!higher.isEmpty() && !lower.isEmpty(),
+						() -> "Malformed role hierarchy line: " + line);
+				directlyReachable.computeIfAbsent(higher, k -> new ArrayList<>()).add(lower);
+			}
+		}
+		return of(directlyReachable);
+	}
+
+	/**
+	 * @return hierarchy with no relation: each authority reaches itself only
+	 */
+	public static RoleHierarchyClosure none() {
+		return NONE;
+	}
+
+	public boolean isEmpty() {
+		return names.length == 0;
+	}
+
+	/**
+	 * @return number of authorities in this hierarchy (ids range from 0 to size - 1)
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param authority authority name
+	 * @return id of {@code authority} in this hierarchy, -1 if it is not part of it
+	 */
+	public int indexOf(String authority) {
+		final Integer id = ids.get(authority);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id as returned by {@link #indexOf(String)}
+	 * @return authority name
+	 */
+	public String nameAt(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @param id as returned by {@link #indexOf(String)}
+	 * @return names of all authorities reachable from {@code id}, itself included. Do not modify.
+	 */
+	String[] reachableAt(int id) {
+		return reachable[id];
+	}
+
+	/**
+	 * @param authority authority name
+	 * @return immutable list of authorities reachable from {@code authority}, itself included (even if not part of
+	 *         this hierarchy)
+	 */
+	public List<String> reachableFrom(String authority) {
+		final int id = indexOf(authority);
+		return id < 0 ? List.of(authority) : List.of(reachable[id]);
+	}
+
+	private String[] close(int id, Map<String, Set<String>> edges, int[] state) {
+		if (state[id] == DONE) {
+			return reachable[id];
+		}
+		if (state[id] == VISITING) {
+			throw new IllegalArgumentException("Cycle in role hierarchy involving " + names[id]);
+		}
+		state[id] = VISITING;
+		final Set<String> closure = new LinkedHashSet<>();
+		closure.add(names[id]);
+		for (final String lower : edges.get(names[id])) {
+			for (final String reached : close(ids.get(lower), edges, state)) {
+				closure.add(reached);
+			}
+		}
+		reachable[id] = closure.toArray(new String[0]);
+		state[id] = DONE;
+		return reachable[id];
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Hand-written tokenizer for space delimited scope claims (RFC 6749 section 3.3), or collections of such strings.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+final class Scopes {
+
+	private Scopes() {
+	}
+
+	/**
+	 * @param claim {@code scope} or {@code scp} claim value
+	 * @return immutable set of scopes, empty if claim is null
+	 */
+	static Set<String> parse(Object claim) {
+		if (claim == null) {
+			return Set.of();
+		}
+		final List<String> scopes = new ArrayList<>();
+		if (claim instanceof Collection<?>) {
+			for (final Object element : (Collection<?>) claim) {
+				if (element != null) {
+					tokenize(element.toString(), scopes);
+				}
+			}
+		} else {
+			tokenize(claim.toString(), scopes);
+		}
+		return Set.copyOf(scopes);
+	}
+
+	/**
+	 * Does not allocate for {@link String} claims and {@link RandomAccess} lists of strings (such as JSON arrays).
+	 *
+	 * @param claim {@code scope} or {@code scp} claim value
+	 * @param scope scope to look for
+	 * @return true if one of claim tokens is {@code scope}
+	 */
+	static boolean contains(Object claim, String scope) {
+		if (claim == null || scope == null || scope.isEmpty()) {
+			return false;
+		}
+		if (claim instanceof String) {
+			return containsToken((String) claim, scope);
+		}
+		if (claim instanceof List<?> && claim instanceof RandomAccess) {
+			final List<?> elements = (List<?>) claim;
+			for (int i = 0; i < elements.size(); ++i) {
+				final Object element = elements.get(i);
+				if (element != null && containsToken(element.toString(), scope)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (claim instanceof Collection<?>) {
+			for (final Object element : (Collection<?>) claim) {
+				if (element != null && containsToken(element.toString(), scope)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return containsToken(claim.toString(), scope);
+	}
+
+	private static void tokenize(String scopes, List<String> tokens) {
+		final int length = scopes.length();
+		int start = 0;
+		while (start < length) {
+			while (start < length && scopes.charAt(start) == ' ') {
+				++start;
+			}
+			int end = start;
+			while (end < length && scopes.charAt(end) != ' ') {
+				++end;
+			}
+			if (end > start) {
+				tokens.add(scopes.substring(start, end));
+			}
+			start = end;
+		}
+	}
+
+	private static boolean containsToken(String scopes, String scope) {
+		final int length = scope.length();
+		int from = 0;
+		int i;
+		while ((i = scopes.indexOf(scope, from)) >= 0) {
+			final int end = i + length;
+			if ((i == 0 || scopes.charAt(i - 1) == ' ') && (end == scopes.length() || scopes.charAt(end) == ' ')) {
+				return true;
+			}
+			from = i + 1;
+		}
+		return false;
+	}
+}
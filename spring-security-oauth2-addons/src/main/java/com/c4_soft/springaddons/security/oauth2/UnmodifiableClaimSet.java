@@ -15,19 +15,141 @@
  */
 package com.c4_soft.springaddons.security.oauth2;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
+ * <p>
+ * Immutable claim-set. Claims are copied into an unmodifiable {@link HashMap}, unless the map is handed over with
+ * {@link #UnmodifiableClaimSet(Map, boolean)} or already is a {@link CompactClaimSet} (lighter, but slower lookups:
+ * opt-in with {@code new UnmodifiableClaimSet(CompactClaimSet.of(claims))}).
+ * </p>
+ * <p>
+ * As claims can't change, typed values ({@link #getAsInstant(String)}, {@link #getAsStringSet(String)},
+ * {@link #getAsUri(String)}, {@link #getAsBoolean(String)} and {@link #getScopes()}, also encoded with
+ * {@link #getScopes(NameVocabulary)}) are parsed on first access only and then served from a thread-safe per-instance
+ * cache. Sets returned by {@link #getAsStringSet(String)} are unmodifiable.
+ * </p>
+ * <p>
+ * Equality is the {@link Map} one (same claims), but the hash-code is computed once and compared before claims when
+ * both operands are {@link UnmodifiableClaimSet}: unequal claim-sets are usually told apart without walking claims,
+ * which makes instances cheap keys for hash-based caches.
+ * </p>
  *
  * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
  *
  */
 public class UnmodifiableClaimSet extends DelegatingMap<String, Object> implements ClaimSet {
+
+	/**
+	 * {@link ConcurrentHashMap} does not accept null values: this one stands for "claim is absent"
+	 */
+	private static final Object NULL_VALUE = new Object();
+
+	private final Map<Object, Map<String, Object>> parsedClaims = new ConcurrentHashMap<>(4);
+
+	/**
+	 * Lazily computed, 0 meaning "not yet". Races are benign (same as {@link String#hashCode()}): worst case, it is
+	 * computed more than once
+	 */
+	private int hash;
+
 	public UnmodifiableClaimSet(Map<String, Object> delegate) {
-		super(Collections.unmodifiableMap(new HashMap<>(delegate)));
+		this(delegate, true);
+	}
+
+	/**
+	 * @param delegate claims
+	 * @param copy if false, {@code delegate} is wrapped without copy (read-only view): caller must guarantee it is not
+	 *        modified afterwards, which is the case for already immutable maps such as {@code Jwt::getClaims}
+	 */
+	public UnmodifiableClaimSet(Map<String, Object> delegate, boolean copy) {
+		super(copy ? copyOf(delegate) : readOnly(delegate));
+	}
+
+	@Override
+	public Instant getAsInstant(String name) {
+		final Object parsed = getParsed(Instant.class, name);
+		return parsed == null ? putParsed(Instant.class, name, ClaimSet.super.getAsInstant(name)) : unmask(parsed);
+	}
+
+	/**
+	 * Same as default implementation, except for ISO-8601 strings which are served from {@link #getAsInstant(String)}
+	 * cache
+	 */
+	@Override
+	public long getAsEpochSecond(String name) {
+		final Object claim = get(name);
+		if (claim instanceof String) {
+			return getAsInstant(name).getEpochSecond();
+		}
+		return ClaimSet.super.getAsEpochSecond(name);
+	}
+
+	@Override
+	public Set<String> getAsStringSet(String name) {
+		final Object parsed = getParsed(Set.class, name);
+		if (parsed != null) {
+			return unmask(parsed);
+		}
+		final Set<String> claim = ClaimSet.super.getAsStringSet(name);
+		return putParsed(Set.class, name, claim == null ? null : Collections.unmodifiableSet(claim));
+	}
+
+	@Override
+	public Set<String> getScopes() {
+		final Object parsed = getParsed(Scopes.class, ClaimNames.SCOPE);
+		return parsed == null ? putParsed(Scopes.class, ClaimNames.SCOPE, ClaimSet.super.getScopes()) : unmask(parsed);
+	}
+
+	@Override
+	public NameBitSet getScopes(NameVocabulary vocabulary) {
+		final Object parsed = getParsed(vocabulary, ClaimNames.SCOPE);
+		return parsed == null
+				? putParsed(vocabulary, ClaimNames.SCOPE, ClaimSet.super.getScopes(vocabulary))
+				: unmask(parsed);
+	}
+
+	@Override
+	public URI getAsUri(String name) throws URISyntaxException {
+		final Object parsed = getParsed(URI.class, name);
+		return parsed == null ? putParsed(URI.class, name, ClaimSet.super.getAsUri(name)) : unmask(parsed);
+	}
+
+	@Override
+	public Boolean getAsBoolean(String name) {
+		final Object parsed = getParsed(Boolean.class, name);
+		return parsed == null ? putParsed(Boolean.class, name, ClaimSet.super.getAsBoolean(name)) : unmask(parsed);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = getDelegate().hashCode();
+			hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof UnmodifiableClaimSet) {
+			final UnmodifiableClaimSet other = (UnmodifiableClaimSet) obj;
+			return getDelegate() == other.getDelegate()
+					|| hashCode() == other.hashCode() && getDelegate().equals(other.getDelegate());
+		}
+		return obj instanceof Map && getDelegate().equals(obj);
 	}
 
 	@Override
@@ -37,4 +159,51 @@ public class UnmodifiableClaimSet extends DelegatingMap<String, Object> implemen
 				.map(e -> String.format("%s => %s", e.getKey(), e.getValue()))
 				.collect(Collectors.joining(", ", "[", "]"));
 	}
+
+	/**
+	 * @param conversion identifies the conversion applied to the claim, usually the target type
+	 * @param name claim name
+	 * @return null if claim was not parsed yet, a "null" marker if it was parsed to null (see {@link #unmask(Object)}),
+	 *         parsed value otherwise
+	 */
+	protected Object getParsed(Object conversion, String name) {
+		return parsedClaims(conversion).get(name);
+	}
+
+	/**
+	 * Stores a parsed value. If another thread did the same concurrently, first stored value wins.
+	 *
+	 * @param <T> parsed value type
+	 * @param conversion identifies the conversion applied to the claim, usually the target type
+	 * @param name claim name
+	 * @param parsed claim value after conversion
+	 * @return the value held by the cache
+	 */
+	protected <T> T putParsed(Object conversion, String name, T parsed) {
+		final Object previous = parsedClaims(conversion).putIfAbsent(name, parsed == null ? NULL_VALUE : parsed);
+		return previous == null ? parsed : unmask(previous);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static <T> T unmask(Object parsed) {
+		return parsed == NULL_VALUE ? null : (T) parsed;
+	}
+
+	private static Map<String, Object> copyOf(Map<String, Object> claims) {
+		if (claims instanceof CompactClaimSet) {
+			return claims;
+		}
+		return Collections.unmodifiableMap(new HashMap<>(claims));
+	}
+
+	private static Map<String, Object> readOnly(Map<String, Object> claims) {
+		if (claims instanceof CompactClaimSet || claims instanceof JwtPayloadClaimSet) {
+			return claims;
+		}
+		return Collections.unmodifiableMap(claims);
+	}
+
+	private Map<String, Object> parsedClaims(Object conversion) {
+		return parsedClaims.computeIfAbsent(conversion, c -> new ConcurrentHashMap<>());
+	}
 }
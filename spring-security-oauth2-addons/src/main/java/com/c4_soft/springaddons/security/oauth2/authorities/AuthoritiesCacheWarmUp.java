@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Fills a {@link CachingAuthoritiesProvider} with the authorities of the most recently active users, by large pages,
+ * so that the first wave of requests after a deploy does not query authorities one user at a time.
+ * </p>
+ * <p>
+ * Warm-up stops on whichever comes first: no more pages, {@code maxSubjects} preloaded, {@code timeBudget} elapsed
+ * or cache full. Pages are loaded on a dedicated thread and waited for no longer than the remaining time budget: a
+ * hung page load does not block startup (its thread is interrupted). It is best effort: a failing page ends warm-up
+ * without failing application startup (cache is then filled on demand, as without warm-up). The failure is kept in
+ * {@link Result#getFailure()} for callers to report.
+ * </p>
+ * <p>
+ * As a bean, it runs when the application context starts its {@link SmartLifecycle} beans. Spring Boot 2.2 web
+ * application contexts start the embedded web server in {@code finishRefresh()}, only after lifecycle beans are
+ * started: the instance accepts no traffic, and so is not reported ready to a load-balancer, before warm-up is
+ * over.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class AuthoritiesCacheWarmUp implements SmartLifecycle {
+
+	/**
+	 * Late among lifecycle beans (which all start before the embedded web server), so that the data source and
+	 * other lifecycle dependencies are already up
+	 */
+	public static final int DEFAULT_PHASE = Integer.MAX_VALUE - 1024;
+
+	private final CachingAuthoritiesProvider authoritiesProvider;
+
+	private final AuthoritiesPageLoader pageLoader;
+
+	private final int pageSize;
+
+	private final int maxSubjects;
+
+	private final Duration timeBudget;
+
+	private final Clock clock;
+
+	private volatile boolean running = false;
+
+	private volatile Result result;
+
+	/**
+	 * @param authoritiesProvider cache to fill
+	 * @param pageLoader authorities source, most recently active users first
+	 * @param pageSize number of subjects per page
+	 * @param maxSubjects maximum number of subjects to preload
+	 * @param timeBudget maximum warm-up duration
+	 */
+	public AuthoritiesCacheWarmUp(
+			CachingAuthoritiesProvider authoritiesProvider,
+			AuthoritiesPageLoader pageLoader,
+			int pageSize,
+			int maxSubjects,
+			Duration timeBudget) {
+		this(authoritiesProvider, pageLoader, pageSize, maxSubjects, timeBudget, Clock.systemUTC());
+	}
+
+	public AuthoritiesCacheWarmUp(
+			CachingAuthoritiesProvider authoritiesProvider,
+			AuthoritiesPageLoader pageLoader,
+			int pageSize,
+			int maxSubjects,
+			Duration timeBudget,
+			Clock clock) {
+		Assert.notNull(authoritiesProvider, "authoritiesProvider can't be null");
+		Assert.notNull(pageLoader, "pageLoader can't be null");
+		Assert.isTrue(pageSize > 0, "pageSize must be positive");
+		Assert.isTrue(maxSubjects >= 0, "maxSubjects can't be negative");
+		Assert.isTrue(timeBudget != null && !timeBudget.isNegative(), "timeBudget can't be negative");
+		Assert.notNull(clock, "clock can't be null");
+		this.authoritiesProvider = authoritiesProvider;
+		this.pageLoader = pageLoader;
+		this.pageSize = pageSize;
+		this.maxSubjects = maxSubjects;
+		this.timeBudget = timeBudget;
+		this.clock = clock;
+	}
+
+	/**
+	 * Runs warm-up on current thread
+	 *
+	 * @return what was preloaded and why warm-up stopped
+	 */
+	public Result warmUp() {
+		final long start = clock.millis();
+		final long deadline = start + timeBudget.toMillis();
+		int preloaded = 0;
+		int page = 0;
+		StopReason reason = StopReason.COMPLETED;
+		Throwable failure = null;
+		final ExecutorService pageExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "authorities-warm-up");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			pages: while (true) {
+				if (preloaded >= maxSubjects) {
+					reason = StopReason.SIZE_BUDGET;
+					break;
+				}
+				final long remaining = deadline - clock.millis();
+				if (remaining <= 0) {
+					reason = StopReason.TIME_BUDGET;
+					break;
+				}
+				// constant page size: loaders are likely to compute offsets as page * pageSize
+				final int pageIndex = page++;
+				final Map<String, ? extends Collection<String>> authorities = CompletableFuture
+						.supplyAsync(() -> pageLoader.loadPage(pageIndex, pageSize), pageExecutor)
+						.get(remaining, TimeUnit.MILLISECONDS);
+				if (authorities == null || authorities.isEmpty()) {
+					break;
+				}
+				for (final Map.Entry<String, ? extends Collection<String>> subject : authorities.entrySet()) {
+					if (preloaded >= maxSubjects) {
+						reason = StopReason.SIZE_BUDGET;
+						break pages;
+					}
+					if (!authoritiesProvider.preload(subject.getKey(), subject.getValue())) {
+						reason = StopReason.CACHE_FULL;
+						break pages;
+					}
+					++preloaded;
+				}
+			}
+		} catch (final TimeoutException e) {
+			reason = StopReason.TIME_BUDGET;
+		} catch (final ExecutionException e) {
+			reason = StopReason.FAILED;
+			failure = e.getCause();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reason = StopReason.FAILED;
+			failure = e;
+		} catch (final RuntimeException e) {
+			reason = StopReason.FAILED;
+			failure = e;
+		} finally {
+			pageExecutor.shutdownNow();
+		}
+		result = new Result(preloaded, page, Duration.ofMillis(clock.millis() - start), reason, failure);
+		return result;
+	}
+
+	/**
+	 * @return last warm-up result, null if it did not run yet
+	 */
+	public Result getResult() {
+		return result;
+	}
+
+	@Override
+	public void start() {
+		warmUp();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return DEFAULT_PHASE;
+	}
+
+	public static enum StopReason {
+		COMPLETED, SIZE_BUDGET, TIME_BUDGET, CACHE_FULL, FAILED
+	}
+
+	public static class Result {
+		private final int preloadedSubjects;
+
+		private final int pages;
+
+		private final Duration duration;
+
+		private final StopReason stopReason;
+
+		private final Throwable failure;
+
+		protected Result(
+				int preloadedSubjects,
+				int pages,
+				Duration duration,
+				StopReason stopReason,
+				Throwable failure) {
+			this.preloadedSubjects = preloadedSubjects;
+			this.pages = pages;
+			this.duration = duration;
+			this.stopReason = stopReason;
+			this.failure = failure;
+		}
+
+		public int getPreloadedSubjects() {
+			return preloadedSubjects;
+		}
+
+		/**
+		 * @return number of pages requested (including the final empty or failed one)
+		 */
+		public int getPages() {
+			return pages;
+		}
+
+		public Duration getDuration() {
+			return duration;
+		}
+
+		public StopReason getStopReason() {
+			return stopReason;
+		}
+
+		/**
+		 * @return what made warm-up stop with {@link StopReason#FAILED}, null otherwise
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"preloadedSubjects=%d, pages=%d, duration=%s, stopReason=%s, failure=%s",
+					preloadedSubjects,
+					pages,
+					duration,
+					stopReason,
+					failure);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Map;
+
+/**
+ * Reads which users authorities changed since a watermark: a version column or a last-update timestamp (as epoch
+ * milliseconds for instance) of the authorities table, for instance:
+ *
+ * <pre>
+ * SELECT user_subject, MAX(version) FROM user_authority WHERE version &gt; :watermark GROUP BY user_subject
+ * </pre>
+ * <p>
+ * Deleted rows must be accounted for too (soft deletes or a separate change-log table).
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface AuthoritiesChangesLoader {
+
+	/**
+	 * @param watermark greatest version returned by previous call (or initial watermark)
+	 * @return greatest version by subject, for subjects with changes strictly greater than {@code watermark}
+	 */
+	Map<String, Long> loadChanges(long watermark);
+}
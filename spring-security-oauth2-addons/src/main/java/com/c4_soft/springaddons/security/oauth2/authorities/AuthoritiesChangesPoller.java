@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Incremental invalidation of a {@link CachingAuthoritiesProvider}: polls an {@link AuthoritiesChangesLoader} at fixed
+ * delay and evicts (or refreshes) only the subjects which authorities changed. Permission changes then take effect
+ * within a poll interval, without shortening the cache time to live for everyone.
+ * </p>
+ * <p>
+ * The watermark only moves forward when a poll succeeds: a failed poll is retried from the same watermark on next
+ * run. If applying a change fails (for instance when broadcasting an invalidation over an
+ * {@link AuthoritiesInvalidationBus} fails), other changes are still applied, the failure is counted and the watermark
+ * stays below the failed change version, so that it is retried on next poll (along with the changes with greater
+ * versions, which is harmless).
+ * </p>
+ * <p>
+ * In {@link Mode#EVICT} mode, evictions go through {@link CachingAuthoritiesProvider#invalidate(String)}: with an
+ * {@link AuthoritiesInvalidationBus}, a poller on a single instance is enough for the whole cluster. In
+ * {@link Mode#REFRESH} mode, reloads are local (nothing is broadcast): each instance needs its own poller.
+ * </p>
+ * <p>
+ * As a bean, polling starts and stops with the application context. {@link #poll()} can also be called directly.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class AuthoritiesChangesPoller implements SmartLifecycle, AutoCloseable {
+
+	public static enum Mode {
+		/**
+		 * Changed subjects are dropped from cache: next request for it waits for a load, but revoked authorities are
+		 * never served once the change is polled
+		 */
+		EVICT,
+		/**
+		 * Changed subjects are reloaded in the background (see {@link CachingAuthoritiesProvider#refresh(String)}):
+		 * no request waits, but previous authorities are served until reload completes
+		 */
+		REFRESH
+	}
+
+	private final CachingAuthoritiesProvider authoritiesProvider;
+
+	private final AuthoritiesChangesLoader changesLoader;
+
+	private final Duration interval;
+
+	private final Mode mode;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final boolean ownsScheduler;
+
+	private final Object pollLock = new Object();
+
+	private volatile long watermark;
+
+	private volatile ScheduledFuture<?> scheduledPolls;
+
+	private final LongAdder polls = new LongAdder();
+
+	private final LongAdder pollFailures = new LongAdder();
+
+	private final LongAdder changedSubjects = new LongAdder();
+
+	private final LongAdder changeFailures = new LongAdder();
+
+	/**
+	 * @param authoritiesProvider cache to invalidate
+	 * @param changesLoader changes source
+	 * @param initialWatermark changes with greater version are processed (current max version or timestamp, usually)
+	 * @param interval delay between the end of a poll and the start of next one
+	 * @param mode what to do with changed subjects
+	 */
+	public AuthoritiesChangesPoller(
+			CachingAuthoritiesProvider authoritiesProvider,
+			AuthoritiesChangesLoader changesLoader,
+			long initialWatermark,
+			Duration interval,
+			Mode mode) {
+		this(authoritiesProvider, changesLoader, initialWatermark, interval, mode, null);
+	}
+
+	/**
+	 * @param authoritiesProvider cache to invalidate
+	 * @param changesLoader changes source
+	 * @param initialWatermark changes with greater version are processed (current max version or timestamp, usually)
+	 * @param interval delay between the end of a poll and the start of next one
+	 * @param mode what to do with changed subjects
+	 * @param scheduler runs polls. If null, a single daemon thread one is created (and then shut down by
+	 *        {@link #close()})
+	 */
+	public AuthoritiesChangesPoller(
+			CachingAuthoritiesProvider authoritiesProvider,
+			AuthoritiesChangesLoader changesLoader,
+			long initialWatermark,
+			Duration interval,
+			Mode mode,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(authoritiesProvider, "authoritiesProvider can't be null");
+		Assert.notNull(changesLoader, "changesLoader can't be null");
+		Assert.isTrue(interval != null && !interval.isNegative() && !interval.isZero(), "interval must be positive");
+		Assert.notNull(mode, "mode can't be null");
+		this.authoritiesProvider = authoritiesProvider;
+		this.changesLoader = changesLoader;
+		this.watermark = initialWatermark;
+		this.interval = interval;
+		this.mode = mode;
+		this.ownsScheduler = scheduler == null;
+		this.scheduler = scheduler == null ? defaultScheduler() : scheduler;
+	}
+
+	/**
+	 * Loads changes since current watermark and applies it to the cache, on current thread
+	 *
+	 * @return number of changed subjects successfully evicted or refreshed
+	 */
+	public int poll() {
+		synchronized (pollLock) {
+			polls.increment();
+			final Map<String, Long> changes;
+			try {
+				changes = changesLoader.loadChanges(watermark);
+			} catch (final RuntimeException e) {
+				pollFailures.increment();
+				return 0;
+			}
+			if (changes == null || changes.isEmpty()) {
+				return 0;
+			}
+			long latest = watermark;
+			long firstFailed = Long.MAX_VALUE;
+			int applied = 0;
+			for (final Map.Entry<String, Long> change : changes.entrySet()) {
+				final long version = change.getValue() == null ? watermark : change.getValue();
+				try {
+					if (mode == Mode.EVICT) {
+						authoritiesProvider.invalidate(change.getKey());
+					} else {
+						authoritiesProvider.refresh(change.getKey());
+					}
+					++applied;
+				} catch (final RuntimeException e) {
+					// keep going with other subjects: an exception escaping a scheduled poll would cancel all next ones
+					changeFailures.increment();
+					firstFailed = Math.min(firstFailed, version);
+					continue;
+				}
+				latest = Math.max(latest, version);
+			}
+			watermark = Math.max(watermark, Math.min(latest, firstFailed - 1));
+			changedSubjects.add(applied);
+			return applied;
+		}
+	}
+
+	public long getWatermark() {
+		return watermark;
+	}
+
+	public long getPollCount() {
+		return polls.sum();
+	}
+
+	public long getPollFailureCount() {
+		return pollFailures.sum();
+	}
+
+	public long getChangedSubjectCount() {
+		return changedSubjects.sum();
+	}
+
+	/**
+	 * @return number of changes which could not be applied (and will be retried on next poll)
+	 */
+	public long getChangeFailureCount() {
+		return changeFailures.sum();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (scheduledPolls == null) {
+			final long intervalMillis = interval.toMillis();
+			scheduledPolls =
+					scheduler.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (scheduledPolls != null) {
+			scheduledPolls.cancel(false);
+			scheduledPolls = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return scheduledPolls != null;
+	}
+
+	/**
+	 * Stops polling and shuts down the default scheduler, if this poller created it
+	 */
+	@Override
+	public void close() {
+		stop();
+		if (ownsScheduler) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private static ScheduledExecutorService defaultScheduler() {
+		return new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread thread = new Thread(runnable, "authorities-changes-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Broadcasts authorities invalidations to all application instances, so that each one can evict its local
+ * {@link CachingAuthoritiesProvider} entries (see
+ * {@link CachingAuthoritiesProvider.Builder#invalidationBus(AuthoritiesInvalidationBus)}).
+ * </p>
+ * <p>
+ * Implementations: {@link InMemoryAuthoritiesInvalidationBus} (single JVM, tests),
+ * {@link JdbcPollingAuthoritiesInvalidationBus} (shared database table). A message-broker one (JMS topic, Redis
+ * pub/sub, ...) is a couple of lines: {@code publish} sends, {@code subscribe} registers a broker listener.
+ * Delivery is at-most-once: cache time to live remains the backstop for lost messages.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public interface AuthoritiesInvalidationBus {
+
+	/**
+	 * @param subjects users which authorities changed
+	 */
+	void publish(Collection<String> subjects);
+
+	/**
+	 * @param listener called with invalidated subjects, for messages published by any instance (this one included)
+	 * @return subscription, to be closed to stop receiving messages
+	 */
+	Subscription subscribe(Consumer<Collection<String>> listener);
+
+	@FunctionalInterface
+	public static interface Subscription extends AutoCloseable {
+		@Override
+		void close();
+	}
+}
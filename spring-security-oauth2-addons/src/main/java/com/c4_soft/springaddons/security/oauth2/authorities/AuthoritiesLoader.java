@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+
+/**
+ * Retrieves the authorities granted to a user from where the application stores it (a database table for instance).
+ * Implementations are usually blocking: {@link CachingAuthoritiesProvider} takes care of calling it as seldom as
+ * possible.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface AuthoritiesLoader {
+
+	/**
+	 * @param subject user subject (as in {@code sub} claim)
+	 * @return authorities names granted to {@code subject}, empty if none (not null)
+	 */
+	Collection<String> loadAuthorities(String subject);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Pages through persisted authorities, most recently active users first, to warm-up a
+ * {@link CachingAuthoritiesProvider} (see {@link AuthoritiesCacheWarmUp}).
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface AuthoritiesPageLoader {
+
+	/**
+	 * @param page page index (starting at 0)
+	 * @param pageSize maximum number of subjects in the page
+	 * @return authorities names by subject, empty once all subjects were returned
+	 */
+	Map<String, ? extends Collection<String>> loadPage(int page, int pageSize);
+}
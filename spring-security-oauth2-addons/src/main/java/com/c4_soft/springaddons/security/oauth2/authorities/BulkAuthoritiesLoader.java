@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Retrieves the authorities granted to several users with a single request to the authorities store (a
+ * {@code WHERE subject IN (...)} query for instance). See {@link MicroBatchingAuthoritiesLoader}.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface BulkAuthoritiesLoader {
+
+	/**
+	 * @param subjects users subjects (no duplicates)
+	 * @return authorities names by subject. Subjects with no authorities may be omitted
+	 */
+	Map<String, ? extends Collection<String>> loadAuthorities(Collection<String> subjects);
+}
@@ -0,0 +1,857 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.GrantedAuthoritiesCache;
+import com.c4_soft.springaddons.security.oauth2.RoleHierarchyClosure;
+
+/**
+ * <p>
+ * Bounded, time-based cache of the authorities granted to each user, in front of an {@link AuthoritiesLoader}:
+ * </p>
+ * <ul>
+ * <li>entries expire {@code timeToLive} after being loaded: an expired entry is never served</li>
+ * <li>empty results (users with no persisted authorities) are cached too, for {@code negativeTimeToLive} (usually
+ * shorter) and without refresh-ahead, so that unknown users do not hit the {@link AuthoritiesLoader} on each
+ * request</li>
+ * <li>entries older than {@code refreshAfter} (but not expired) are served <b>and</b> reloaded asynchronously on the
+ * {@code refreshExecutor}: users sending requests regularly never wait for the {@link AuthoritiesLoader} after their
+ * first request. At most one refresh per user is in flight. If refresh fails, current value is kept until it
+ * expires</li>
+ * <li>concurrent requests for a user who is not in cache (or whose entry expired) share a single load: the
+ * {@link AuthoritiesLoader} is never called concurrently for the same subject</li>
+ * <li>once {@code maxSize} is reached, expired entries are purged first, then arbitrary ones until 90% of max
+ * size</li>
+ * <li>authorities and authority sets are shared between users (see {@link GrantedAuthoritiesCache})</li>
+ * <li>loads are guarded by a circuit breaker ({@code failureThreshold} consecutive failures or timeouts open it for
+ * {@code openDuration}) and, if {@code lookupTimeout} is set, by a latency budget. When a load fails, times out or is
+ * short-circuited, the last known authorities are served if they expired less than {@code maxStaleness} ago: a
+ * database brown-out degrades freshness instead of throughput. Without last known authorities, timed-out lookups keep
+ * waiting for the load and failed or short-circuited ones throw</li>
+ * <li>with an {@link AuthoritiesInvalidationBus}, {@link #invalidate(String)} is broadcast to all instances: each one
+ * keeps its local cache for reads</li>
+ * </ul>
+ * <p>
+ * Instances are built with {@link #builder(AuthoritiesLoader)}. If no refresh executor is provided, a small bounded
+ * one (daemon threads) is created and then shut down by {@link #close()}. Same for the lookup executor, when a lookup
+ * timeout is set.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CachingAuthoritiesProvider implements AutoCloseable {
+
+	/**
+	 * Default lookup executor size, when a lookup timeout is set
+	 */
+	public static final int DEFAULT_LOOKUP_THREADS = 16;
+
+	private final AuthoritiesLoader loader;
+
+	private final int maxSize;
+
+	private final long timeToLiveMillis;
+
+	private final long refreshAfterMillis;
+
+	private final long negativeTimeToLiveMillis;
+
+	private final long lookupTimeoutMillis;
+
+	private final long maxStalenessMillis;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final Executor refreshExecutor;
+
+	private final ExecutorService ownedExecutor;
+
+	private final Executor lookupExecutor;
+
+	private final ExecutorService ownedLookupExecutor;
+
+	private final Clock clock;
+
+	private final GrantedAuthoritiesCache authoritiesCache;
+
+	private final AuthoritiesInvalidationBus invalidationBus;
+
+	private final AuthoritiesInvalidationBus.Subscription invalidationSubscription;
+
+	private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+	private final Map<String, CompletableFuture<CacheEntry>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder negativeHits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder coalesced = new LongAdder();
+
+	private final LongAdder refreshes = new LongAdder();
+
+	private final LongAdder refreshFailures = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder timeouts = new LongAdder();
+
+	private final LongAdder shortCircuited = new LongAdder();
+
+	private final LongAdder staleServed = new LongAdder();
+
+	protected CachingAuthoritiesProvider(Builder builder) {
+		this.loader = builder.loader;
+		this.maxSize = builder.maxSize;
+		this.timeToLiveMillis = builder.timeToLive.toMillis();
+		this.refreshAfterMillis = builder.refreshAfter.toMillis();
+		this.negativeTimeToLiveMillis = builder.negativeTimeToLive.toMillis();
+		this.lookupTimeoutMillis = builder.lookupTimeout.toMillis();
+		this.maxStalenessMillis = builder.maxStaleness.toMillis();
+		this.circuitBreaker = new CircuitBreaker(builder.failureThreshold, builder.openDuration.toMillis());
+		this.clock = builder.clock;
+		this.authoritiesCache = new GrantedAuthoritiesCache(
+				"",
+				UnaryOperator.identity(),
+				builder.roleHierarchy,
+				builder.maxAuthorities,
+				builder.maxSize);
+		this.invalidationBus = builder.invalidationBus;
+		this.invalidationSubscription = invalidationBus == null ? null : invalidationBus.subscribe(subjects -> {
+			for (final String subject : subjects) {
+				invalidateLocally(subject);
+			}
+		});
+		if (builder.refreshExecutor == null) {
+			this.ownedExecutor = defaultRefreshExecutor();
+			this.refreshExecutor = ownedExecutor;
+		} else {
+			this.ownedExecutor = null;
+			this.refreshExecutor = builder.refreshExecutor;
+		}
+		if (lookupTimeoutMillis == 0) {
+			this.ownedLookupExecutor = null;
+			this.lookupExecutor = Runnable::run;
+		} else if (builder.lookupExecutor == null) {
+			this.ownedLookupExecutor = daemonPool(DEFAULT_LOOKUP_THREADS, "authorities-lookup-");
+			this.lookupExecutor = ownedLookupExecutor;
+		} else {
+			this.ownedLookupExecutor = null;
+			this.lookupExecutor = builder.lookupExecutor;
+		}
+	}
+
+	public static Builder builder(AuthoritiesLoader loader) {
+		return new Builder(loader);
+	}
+
+	/**
+	 * Blocking access to a user authorities: on cache miss, the {@link AuthoritiesLoader} is called from current thread
+	 * (lookup executor if a lookup timeout is set), unless a load for the same subject is already in flight, in which
+	 * case its result is awaited.
+	 *
+	 * @param subject user subject
+	 * @return immutable set of authorities granted to {@code subject}
+	 */
+	public Set<GrantedAuthority> getAuthorities(String subject) {
+		Assert.notNull(subject, "subject can't be null");
+		final CacheEntry cached = getCached(subject);
+		if (cached != null) {
+			return cached.authorities;
+		}
+		try {
+			return withFallback(subject, loadShared(subject, lookupExecutor, false)).join().authorities;
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Non-blocking access to a user authorities. Returned future is specific to the caller: cancelling it does not
+	 * affect other callers waiting for the same load.
+	 *
+	 * @param subject user subject
+	 * @param loadExecutor where to call the {@link AuthoritiesLoader} on cache miss (if no load for the same subject is
+	 *        already in flight)
+	 * @return immutable set of authorities granted to {@code subject}, completed already on cache hit
+	 */
+	public CompletableFuture<Set<GrantedAuthority>> getAuthoritiesAsync(String subject, Executor loadExecutor) {
+		Assert.notNull(subject, "subject can't be null");
+		Assert.notNull(loadExecutor, "loadExecutor can't be null");
+		final CacheEntry cached = getCached(subject);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached.authorities);
+		}
+		return withFallback(subject, loadShared(subject, loadExecutor, false)).thenApply(entry -> entry.authorities);
+	}
+
+	/**
+	 * Adds authorities retrieved by other means than the {@link AuthoritiesLoader} (bulk warm-up for instance), as if
+	 * they were loaded now. Existing entries are left untouched and nothing is evicted to make room.
+	 *
+	 * @param subject user subject
+	 * @param authorities authorities names granted to {@code subject}
+	 * @return false if the cache is full, true otherwise (even if {@code subject} was already cached)
+	 */
+	public boolean preload(String subject, Collection<String> authorities) {
+		Assert.notNull(subject, "subject can't be null");
+		if (cache.size() >= maxSize) {
+			return false;
+		}
+		final long now = clock.millis();
+		final CacheEntry entry = entry(authorities, now);
+		if (entry.expiresAt > now) {
+			cache.putIfAbsent(subject, entry);
+		}
+		return true;
+	}
+
+	/**
+	 * Drops {@code subject} authorities: next request will load it again. If an {@link AuthoritiesInvalidationBus} is
+	 * configured, the invalidation is also published to other instances (after local one, so that a publishing failure
+	 * does not leave this instance stale).
+	 *
+	 * @param subject user subject
+	 */
+	public void invalidate(String subject) {
+		invalidateLocally(subject);
+		if (invalidationBus != null) {
+			invalidationBus.publish(List.of(subject));
+		}
+	}
+
+	private void invalidateLocally(String subject) {
+		inFlight.remove(subject);
+		cache.remove(subject);
+	}
+
+	/**
+	 * Reloads {@code subject} authorities in the background if it is cached (and does nothing otherwise). Current
+	 * value is served until reload completes. If reload fails, current value is dropped. Loads already in flight are
+	 * not reused (they could have started before the change which triggered this refresh).
+	 *
+	 * @param subject user subject
+	 */
+	public void refresh(String subject) {
+		Assert.notNull(subject, "subject can't be null");
+		inFlight.remove(subject);
+		final CacheEntry cached = cache.get(subject);
+		if (cached == null) {
+			return;
+		}
+		loadShared(subject, refreshExecutor, true).whenComplete((fresh, error) -> {
+			if (error == null) {
+				refreshes.increment();
+			} else {
+				refreshFailures.increment();
+				cache.remove(subject, cached);
+			}
+		});
+	}
+
+	public void invalidateAll() {
+		inFlight.clear();
+		cache.clear();
+	}
+
+	/**
+	 * @return a snapshot of cache statistics
+	 */
+	public Stats getStats() {
+		return new Stats(
+				hits.sum(),
+				negativeHits.sum(),
+				misses.sum(),
+				coalesced.sum(),
+				refreshes.sum(),
+				refreshFailures.sum(),
+				evictions.sum(),
+				timeouts.sum(),
+				shortCircuited.sum(),
+				staleServed.sum(),
+				circuitBreaker.getState(clock.millis()) != CircuitBreaker.State.CLOSED,
+				cache.size());
+	}
+
+	/**
+	 * Unsubscribes from invalidation bus (if any) and shuts down the default refresh and lookup executors, if this
+	 * provider created them
+	 */
+	@Override
+	public void close() {
+		if (invalidationSubscription != null) {
+			invalidationSubscription.close();
+		}
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdownNow();
+		}
+		if (ownedLookupExecutor != null) {
+			ownedLookupExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return valid cache entry for {@code subject} (scheduling a refresh if due) or null
+	 */
+	private CacheEntry getCached(String subject) {
+		final long now = clock.millis();
+		final CacheEntry cached = cache.get(subject);
+		if (cached == null || now >= cached.expiresAt) {
+			return null;
+		}
+		hits.increment();
+		if (cached.authorities.isEmpty()) {
+			negativeHits.increment();
+		}
+		if (now >= cached.refreshAt) {
+			refreshAsync(subject, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Applies lookup timeout to {@code load} and falls back to last known authorities on timeout or failure
+	 */
+	private CompletableFuture<CacheEntry> withFallback(String subject, CompletableFuture<CacheEntry> load) {
+		if (load.isDone() && !load.isCompletedExceptionally()) {
+			return load;
+		}
+		final CompletableFuture<CacheEntry> bounded =
+				lookupTimeoutMillis > 0 ? load.copy().orTimeout(lookupTimeoutMillis, TimeUnit.MILLISECONDS) : load;
+		return bounded.handle((entry, error) -> {
+			if (error == null) {
+				return CompletableFuture.completedFuture(entry);
+			}
+			final Throwable cause = error instanceof CompletionException && error.getCause() != null
+					? error.getCause()
+					: error;
+			final CacheEntry stale = cache.get(subject);
+			if (stale != null && clock.millis() < stale.expiresAt + maxStalenessMillis) {
+				staleServed.increment();
+				return CompletableFuture.completedFuture(stale);
+			}
+			// no fallback: keep waiting for a slow load, but report failures
+			return cause instanceof TimeoutException ? load : CompletableFuture.<CacheEntry>failedFuture(cause);
+		}).thenCompose(Function.identity());
+	}
+
+	/**
+	 * @param isRefresh whether the load is a background refresh (not accounted as miss)
+	 * @return in-flight load for {@code subject}, started on {@code loadExecutor} if there was none
+	 */
+	private CompletableFuture<CacheEntry> loadShared(String subject, Executor loadExecutor, boolean isRefresh) {
+		final CompletableFuture<CacheEntry> created = new CompletableFuture<>();
+		final CompletableFuture<CacheEntry> pending = inFlight.putIfAbsent(subject, created);
+		if (pending != null) {
+			if (!isRefresh) {
+				coalesced.increment();
+			}
+			return pending;
+		}
+		if (!isRefresh) {
+			misses.increment();
+		}
+		final CircuitBreaker.Permit permit = circuitBreaker.tryAcquire(clock.millis());
+		if (permit == null) {
+			shortCircuited.increment();
+			inFlight.remove(subject, created);
+			created.completeExceptionally(new IllegalStateException("Authorities loader circuit is open"));
+			return created;
+		}
+		if (lookupTimeoutMillis > 0) {
+			// once per load (not per waiting caller): a slow load counts as a single failure
+			created.copy().orTimeout(lookupTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((entry, error) -> {
+				if (error instanceof TimeoutException) {
+					timeouts.increment();
+					permit.onFailure(clock.millis());
+				}
+			});
+		}
+		try {
+			loadExecutor.execute(() -> loadAndCache(subject, created, permit));
+		} catch (final RejectedExecutionException e) {
+			permit.onFailure(clock.millis());
+			inFlight.remove(subject, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	private void loadAndCache(String subject, CompletableFuture<CacheEntry> pending, CircuitBreaker.Permit permit) {
+		final long now = clock.millis();
+		final CacheEntry loaded;
+		try {
+			loaded = load(subject, now);
+			permit.onSuccess();
+		} catch (final RuntimeException | Error e) {
+			permit.onFailure(clock.millis());
+			inFlight.remove(subject, pending);
+			pending.completeExceptionally(e);
+			return;
+		}
+		if (loaded.expiresAt > now) {
+			cache.put(subject, loaded);
+		}
+		if (!inFlight.remove(subject, pending)) {
+			// invalidated while loading: loaded value might already be outdated
+			cache.remove(subject, loaded);
+		}
+		makeRoom(now);
+		pending.complete(loaded);
+	}
+
+	private CacheEntry load(String subject, long now) {
+		return entry(loader.loadAuthorities(subject), now);
+	}
+
+	private CacheEntry entry(Collection<String> authorities, long now) {
+		if (authorities == null || authorities.isEmpty()) {
+			// no refresh-ahead for negative entries
+			return new CacheEntry(Set.of(), now + negativeTimeToLiveMillis, now + negativeTimeToLiveMillis);
+		}
+		return new CacheEntry(
+				authoritiesCache.authorities(new ArrayList<>(authorities)),
+				now + refreshAfterMillis,
+				now + timeToLiveMillis);
+	}
+
+	private void refreshAsync(String subject, CacheEntry stale) {
+		if (!stale.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		loadShared(subject, refreshExecutor, true).whenComplete((fresh, error) -> {
+			if (error == null) {
+				refreshes.increment();
+			} else {
+				refreshFailures.increment();
+				stale.refreshing.set(false);
+			}
+		});
+	}
+
+	private void makeRoom(long now) {
+		if (cache.size() <= maxSize) {
+			return;
+		}
+		final Iterator<CacheEntry> expired = cache.values().iterator();
+		while (expired.hasNext()) {
+			if (expired.next().expiresAt <= now) {
+				expired.remove();
+				evictions.increment();
+			}
+		}
+		final Iterator<CacheEntry> any = cache.values().iterator();
+		while (cache.size() > maxSize * 9 / 10 && any.hasNext()) {
+			any.next();
+			any.remove();
+			evictions.increment();
+		}
+	}
+
+	private static ExecutorService defaultRefreshExecutor() {
+		return daemonPool(2, "authorities-refresh-");
+	}
+
+	private static ExecutorService daemonPool(int threads, String threadNamePrefix) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		// core == max: with a bounded queue, a pool grows past its core size only once the queue is full
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				threads,
+				threads,
+				60,
+				TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(1024),
+				runnable -> {
+					final Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final class CacheEntry {
+		private final Set<GrantedAuthority> authorities;
+
+		private final long refreshAt;
+
+		private final long expiresAt;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		CacheEntry(Set<GrantedAuthority> authorities, long refreshAt, long expiresAt) {
+			this.authorities = authorities;
+			this.refreshAt = refreshAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	public static class Builder {
+		private final AuthoritiesLoader loader;
+
+		private int maxSize = 10_000;
+
+		private int maxAuthorities = 1024;
+
+		private Duration timeToLive = Duration.ofMinutes(10);
+
+		private Duration refreshAfter = Duration.ofMinutes(5);
+
+		private Duration negativeTimeToLive = Duration.ofMinutes(1);
+
+		private Executor refreshExecutor;
+
+		private RoleHierarchyClosure roleHierarchy = RoleHierarchyClosure.none();
+
+		private AuthoritiesInvalidationBus invalidationBus;
+
+		private Duration lookupTimeout = Duration.ZERO;
+
+		private Executor lookupExecutor;
+
+		private Duration maxStaleness = Duration.ofHours(1);
+
+		private int failureThreshold = 5;
+
+		private Duration openDuration = Duration.ofSeconds(30);
+
+		private Clock clock = Clock.systemUTC();
+
+		protected Builder(AuthoritiesLoader loader) {
+			Assert.notNull(loader, "loader can't be null");
+			this.loader = loader;
+		}
+
+		/**
+		 * @param maxSize maximum number of users in cache (default is 10 000)
+		 * @return this builder
+		 */
+		public Builder maxSize(int maxSize) {
+			Assert.isTrue(maxSize > 0, "maxSize must be positive");
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/**
+		 * @param maxAuthorities maximum number of distinct authorities shared between users (default is 1024)
+		 * @return this builder
+		 */
+		public Builder maxAuthorities(int maxAuthorities) {
+			Assert.isTrue(maxAuthorities >= 0, "maxAuthorities can't be negative");
+			this.maxAuthorities = maxAuthorities;
+			return this;
+		}
+
+		/**
+		 * @param timeToLive how long authorities are served after being loaded (default is 10 minutes)
+		 * @return this builder
+		 */
+		public Builder timeToLive(Duration timeToLive) {
+			Assert.isTrue(timeToLive != null && !timeToLive.isNegative(), "timeToLive can't be negative");
+			this.timeToLive = timeToLive;
+			return this;
+		}
+
+		/**
+		 * @param refreshAfter age after which authorities are reloaded in the background when accessed (default is 5
+		 *        minutes). Should be smaller than time to live
+		 * @return this builder
+		 */
+		public Builder refreshAfter(Duration refreshAfter) {
+			Assert.isTrue(refreshAfter != null && !refreshAfter.isNegative(), "refreshAfter can't be negative");
+			this.refreshAfter = refreshAfter;
+			return this;
+		}
+
+		/**
+		 * @param negativeTimeToLive how long "no authorities" results are served after being loaded (default is 1
+		 *        minute). {@link Duration#ZERO} disables negative caching
+		 * @return this builder
+		 */
+		public Builder negativeTimeToLive(Duration negativeTimeToLive) {
+			Assert.isTrue(
+					negativeTimeToLive != null && !negativeTimeToLive.isNegative(),
+					"negativeTimeToLive can't be negative");
+			this.negativeTimeToLive = negativeTimeToLive;
+			return this;
+		}
+
+		/**
+		 * @param refreshExecutor executor for background refreshes. Should be bounded: rejected refreshes are
+		 *        retried on next access
+		 * @return this builder
+		 */
+		public Builder refreshExecutor(Executor refreshExecutor) {
+			this.refreshExecutor = refreshExecutor;
+			return this;
+		}
+
+		/**
+		 * @param roleHierarchy expansion applied to loaded authorities (cached sets are the expanded ones)
+		 * @return this builder
+		 */
+		public Builder roleHierarchy(RoleHierarchyClosure roleHierarchy) {
+			Assert.notNull(roleHierarchy, "roleHierarchy can't be null");
+			this.roleHierarchy = roleHierarchy;
+			return this;
+		}
+
+		/**
+		 * @param invalidationBus broadcasts {@link CachingAuthoritiesProvider#invalidate(String)} to other instances
+		 *        and receives theirs. Provider subscribes when built and unsubscribes when closed
+		 * @return this builder
+		 */
+		public Builder invalidationBus(AuthoritiesInvalidationBus invalidationBus) {
+			this.invalidationBus = invalidationBus;
+			return this;
+		}
+
+		/**
+		 * @param lookupTimeout latency budget for cache misses: once elapsed, last known authorities are served (if any)
+		 *        while the load goes on in the background. Blocking lookups then load on the lookup executor. Default
+		 *        is {@link Duration#ZERO} (no budget, loads run on caller thread)
+		 * @return this builder
+		 */
+		public Builder lookupTimeout(Duration lookupTimeout) {
+			Assert.isTrue(lookupTimeout != null && !lookupTimeout.isNegative(), "lookupTimeout can't be negative");
+			this.lookupTimeout = lookupTimeout;
+			return this;
+		}
+
+		/**
+		 * @param lookupExecutor bulkhead for blocking lookup misses when a lookup timeout is set. Should allow as many
+		 *        concurrent loads as the store can serve: loads for different subjects run in parallel on it (and can
+		 *        be batched by a {@link MicroBatchingAuthoritiesLoader}). Default is a bounded pool of
+		 *        {@value CachingAuthoritiesProvider#DEFAULT_LOOKUP_THREADS} daemon threads, shut down by
+		 *        {@link CachingAuthoritiesProvider#close()}
+		 * @return this builder
+		 */
+		public Builder lookupExecutor(Executor lookupExecutor) {
+			this.lookupExecutor = lookupExecutor;
+			return this;
+		}
+
+		/**
+		 * @param maxStaleness how long after expiry authorities can still be served as fallback (default is 1 hour).
+		 *        Expired entries may have been evicted before, to make room
+		 * @return this builder
+		 */
+		public Builder maxStaleness(Duration maxStaleness) {
+			Assert.isTrue(maxStaleness != null && !maxStaleness.isNegative(), "maxStaleness can't be negative");
+			this.maxStaleness = maxStaleness;
+			return this;
+		}
+
+		/**
+		 * @param failureThreshold consecutive load failures (or timeouts) opening the circuit (default is 5)
+		 * @param openDuration how long the loader is not called once the circuit opened (default is 30 seconds). A
+		 *        single trial load is then allowed: circuit closes if it succeeds and opens again otherwise
+		 * @return this builder
+		 */
+		public Builder circuitBreaker(int failureThreshold, Duration openDuration) {
+			Assert.isTrue(failureThreshold > 0, "failureThreshold must be positive");
+			Assert.isTrue(openDuration != null && !openDuration.isNegative(), "openDuration can't be negative");
+			this.failureThreshold = failureThreshold;
+			this.openDuration = openDuration;
+			return this;
+		}
+
+		public Builder clock(Clock clock) {
+			Assert.notNull(clock, "clock can't be null");
+			this.clock = clock;
+			return this;
+		}
+
+		public CachingAuthoritiesProvider build() {
+			Assert.isTrue(
+					refreshAfter.compareTo(timeToLive) <= 0,
+					"refreshAfter must not be greater than timeToLive");
+			return new CachingAuthoritiesProvider(this);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of cache statistics
+	 */
+	public static class Stats {
+		private final long hits;
+
+		private final long negativeHits;
+
+		private final long misses;
+
+		private final long coalesced;
+
+		private final long refreshes;
+
+		private final long refreshFailures;
+
+		private final long evictions;
+
+		private final long timeouts;
+
+		private final long shortCircuited;
+
+		private final long staleServed;
+
+		private final boolean circuitOpen;
+
+		private final int size;
+
+		protected Stats(
+				long hits,
+				long negativeHits,
+				long misses,
+				long coalesced,
+				long refreshes,
+				long refreshFailures,
+				long evictions,
+				long timeouts,
+				long shortCircuited,
+				long staleServed,
+				boolean circuitOpen,
+				int size) {
+			this.hits = hits;
+			this.negativeHits = negativeHits;
+			this.misses = misses;
+			this.coalesced = coalesced;
+			this.refreshes = refreshes;
+			this.refreshFailures = refreshFailures;
+			this.evictions = evictions;
+			this.timeouts = timeouts;
+			this.shortCircuited = shortCircuited;
+			this.staleServed = staleServed;
+			this.circuitOpen = circuitOpen;
+			this.size = size;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * @return number of hits on users with no authorities (included in {@link #getHits()})
+		 */
+		public long getNegativeHits() {
+			return negativeHits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return number of cache misses which waited for a load already in flight instead of calling the loader
+		 */
+		public long getCoalesced() {
+			return coalesced;
+		}
+
+		public long getRefreshes() {
+			return refreshes;
+		}
+
+		public long getRefreshFailures() {
+			return refreshFailures;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		/**
+		 * @return number of lookups which exceeded the latency budget
+		 */
+		public long getTimeouts() {
+			return timeouts;
+		}
+
+		/**
+		 * @return number of loads rejected because the circuit was open
+		 */
+		public long getShortCircuited() {
+			return shortCircuited;
+		}
+
+		/**
+		 * @return number of lookups answered with last known authorities after a timeout or failure
+		 */
+		public long getStaleServed() {
+			return staleServed;
+		}
+
+		/**
+		 * @return whether the circuit is open (or half-open) at snapshot time
+		 */
+		public boolean isCircuitOpen() {
+			return circuitOpen;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"hits=%d, negativeHits=%d, misses=%d, coalesced=%d, refreshes=%d, refreshFailures=%d, evictions=%d, timeouts=%d, shortCircuited=%d, staleServed=%d, circuitOpen=%b, size=%d",
+					hits,
+					negativeHits,
+					misses,
+					coalesced,
+					refreshes,
+					refreshFailures,
+					evictions,
+					timeouts,
+					shortCircuited,
+					staleServed,
+					circuitOpen,
+					size);
+		}
+	}
+}
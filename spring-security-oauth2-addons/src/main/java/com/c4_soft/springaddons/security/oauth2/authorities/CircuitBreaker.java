@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Minimal consecutive-failures circuit breaker:
+ * </p>
+ * <ul>
+ * <li>closed: requests are allowed, {@code failureThreshold} consecutive failures open it</li>
+ * <li>open: requests are rejected for {@code openMillis}</li>
+ * <li>half-open: a single trial request is allowed, its success closes the circuit, its failure opens it again. A
+ * trial with no outcome after {@code openMillis} is abandoned and another one is allowed</li>
+ * </ul>
+ * <p>
+ * Each allowed request gets a {@link Permit} and only the first outcome reported on it counts. While the circuit is
+ * open or half-open, only the current trial outcome changes state: late outcomes of requests admitted before the
+ * circuit opened (or of abandoned trials) are ignored.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+final class CircuitBreaker {
+
+	static enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openMillis;
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	/**
+	 * 0 when closed
+	 */
+	private volatile long openUntil = 0L;
+
+	private final AtomicReference<Permit> trial = new AtomicReference<>();
+
+	CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @param now current time in milliseconds
+	 * @return a permit to report the request outcome on, or null if the request is rejected
+	 */
+	Permit tryAcquire(long now) {
+		if (openUntil == 0L) {
+			return new Permit(false, now);
+		}
+		if (now < openUntil) {
+			return null;
+		}
+		final Permit current = trial.get();
+		if (current != null && now < current.acquiredAt + openMillis) {
+			return null;
+		}
+		final Permit created = new Permit(true, now);
+		return trial.compareAndSet(current, created) ? created : null;
+	}
+
+	State getState(long now) {
+		final long until = openUntil;
+		if (until == 0L) {
+			return State.CLOSED;
+		}
+		return now < until ? State.OPEN : State.HALF_OPEN;
+	}
+
+	final class Permit {
+		private final boolean isTrial;
+
+		private final long acquiredAt;
+
+		private final AtomicBoolean isReported = new AtomicBoolean();
+
+		private Permit(boolean isTrial, long acquiredAt) {
+			this.isTrial = isTrial;
+			this.acquiredAt = acquiredAt;
+		}
+
+		void onSuccess() {
+			if (!isReported.compareAndSet(false, true)) {
+				return;
+			}
+			if (isTrial) {
+				if (trial.compareAndSet(this, null)) {
+					consecutiveFailures.set(0);
+					openUntil = 0L;
+				}
+			} else if (openUntil == 0L) {
+				consecutiveFailures.set(0);
+			}
+		}
+
+		void onFailure(long now) {
+			if (!isReported.compareAndSet(false, true)) {
+				return;
+			}
+			if (isTrial) {
+				if (trial.compareAndSet(this, null)) {
+					openUntil = now + openMillis;
+				}
+			} else if (openUntil == 0L && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+				openUntil = now + openMillis;
+			}
+		}
+	}
+}
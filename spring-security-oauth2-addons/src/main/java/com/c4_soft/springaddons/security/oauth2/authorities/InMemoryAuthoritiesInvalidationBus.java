@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link AuthoritiesInvalidationBus} for a single JVM (several caches in the same application, tests): messages are
+ * delivered synchronously, on publishing thread.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class InMemoryAuthoritiesInvalidationBus implements AuthoritiesInvalidationBus {
+
+	private final List<Consumer<Collection<String>>> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void publish(Collection<String> subjects) {
+		if (subjects == null || subjects.isEmpty()) {
+			return;
+		}
+		final List<String> message = List.copyOf(subjects);
+		for (final Consumer<Collection<String>> listener : listeners) {
+			listener.accept(message);
+		}
+	}
+
+	@Override
+	public Subscription subscribe(Consumer<Collection<String>> listener) {
+		Assert.notNull(listener, "listener can't be null");
+		listeners.add(listener);
+		return () -> listeners.remove(listener);
+	}
+}
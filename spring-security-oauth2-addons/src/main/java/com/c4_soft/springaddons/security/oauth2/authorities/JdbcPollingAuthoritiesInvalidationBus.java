@@ -0,0 +1,256 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * {@link AuthoritiesInvalidationBus} over a table shared by all instances: {@code publish} inserts one row per
+ * subject, each instance polls rows with an id greater than the last one it read. Requires no more than the database
+ * authorities are already stored in, at the cost of a poll interval latency (and of a query per interval and
+ * instance). Table is expected to be:
+ * </p>
+ *
+ * <pre>
+ * CREATE TABLE authorities_invalidation (
+ *     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     subject VARCHAR(255) NOT NULL,
+ *     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)
+ * </pre>
+ * <p>
+ * Old rows should be purged periodically (on {@code created_at}). Messages published before an instance first poll
+ * are not delivered to it. Ids committed out of order by concurrent publishers may be missed: cache time to live
+ * remains the backstop.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class JdbcPollingAuthoritiesInvalidationBus implements AuthoritiesInvalidationBus, SmartLifecycle, AutoCloseable {
+
+	private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+	private final DataSource dataSource;
+
+	private final String insertSql;
+
+	private final String selectSql;
+
+	private final String maxIdSql;
+
+	private final Duration interval;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final boolean ownsScheduler;
+
+	private final List<Consumer<Collection<String>>> listeners = new CopyOnWriteArrayList<>();
+
+	private final Object pollLock = new Object();
+
+	/**
+	 * Last delivered id, null until first poll
+	 */
+	private Long lastId = null;
+
+	private volatile ScheduledFuture<?> scheduledPolls;
+
+	private final LongAdder pollFailures = new LongAdder();
+
+	private final LongAdder listenerFailures = new LongAdder();
+
+	public JdbcPollingAuthoritiesInvalidationBus(DataSource dataSource) {
+		this(dataSource, "authorities_invalidation", Duration.ofMillis(500), null);
+	}
+
+	/**
+	 * @param dataSource database holding the invalidation table
+	 * @param table invalidation table name (optionally schema qualified)
+	 * @param interval delay between the end of a poll and the start of next one
+	 * @param scheduler runs polls. If null, a single daemon thread one is created (and then shut down by
+	 *        {@link #close()})
+	 */
+	public JdbcPollingAuthoritiesInvalidationBus(
+			DataSource dataSource,
+			String table,
+			Duration interval,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(dataSource, "dataSource can't be null");
+		Assert.isTrue(table != null && TABLE_NAME.matcher(table).matches(), () -> "Invalid table name: " + table);
+		Assert.isTrue(interval != null && !interval.isNegative() && !interval.isZero(), "interval must be positive");
+		this.dataSource = dataSource;
+		this.insertSql = "INSERT INTO " + table + " (subject) VALUES (?)";
+		this.selectSql = "SELECT id, subject FROM " + table + " WHERE id > ? ORDER BY id";
+		this.maxIdSql = "SELECT MAX(id) FROM " + table;
+		this.interval = interval;
+		this.ownsScheduler = scheduler == null;
+		this.scheduler = scheduler == null ? defaultScheduler() : scheduler;
+	}
+
+	@Override
+	public void publish(Collection<String> subjects) {
+		if (subjects == null || subjects.isEmpty()) {
+			return;
+		}
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement insert = connection.prepareStatement(insertSql)) {
+			for (final String subject : subjects) {
+				insert.setString(1, subject);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		} catch (final SQLException e) {
+			throw new IllegalStateException("Failed to publish authorities invalidation", e);
+		}
+	}
+
+	@Override
+	public Subscription subscribe(Consumer<Collection<String>> listener) {
+		Assert.notNull(listener, "listener can't be null");
+		listeners.add(listener);
+		return () -> listeners.remove(listener);
+	}
+
+	/**
+	 * Reads rows published since last poll and delivers it to listeners, on current thread. First call only records
+	 * current position.
+	 *
+	 * @return number of delivered subjects
+	 */
+	public int poll() {
+		synchronized (pollLock) {
+			try (Connection connection = dataSource.getConnection()) {
+				if (lastId == null) {
+					lastId = maxId(connection);
+					return 0;
+				}
+				final List<String> subjects = new ArrayList<>();
+				long maxId = lastId;
+				try (PreparedStatement select = connection.prepareStatement(selectSql)) {
+					select.setLong(1, lastId);
+					try (ResultSet rows = select.executeQuery()) {
+						while (rows.next()) {
+							maxId = rows.getLong(1);
+							subjects.add(rows.getString(2));
+						}
+					}
+				}
+				lastId = maxId;
+				if (!subjects.isEmpty()) {
+					deliver(List.copyOf(subjects));
+				}
+				return subjects.size();
+			} catch (final SQLException | RuntimeException e) {
+				pollFailures.increment();
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * @return number of polls which failed to read the invalidation table (retried from same position on next poll)
+	 */
+	public long getPollFailureCount() {
+		return pollFailures.sum();
+	}
+
+	/**
+	 * @return number of messages a listener failed to process (not redelivered: other listeners still got it)
+	 */
+	public long getListenerFailureCount() {
+		return listenerFailures.sum();
+	}
+
+	private void deliver(List<String> message) {
+		for (final Consumer<Collection<String>> listener : listeners) {
+			try {
+				listener.accept(message);
+			} catch (final RuntimeException e) {
+				// one failing listener must not deprive the others of the message
+				listenerFailures.increment();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		if (scheduledPolls == null) {
+			poll();
+			final long intervalMillis = interval.toMillis();
+			scheduledPolls =
+					scheduler.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (scheduledPolls != null) {
+			scheduledPolls.cancel(false);
+			scheduledPolls = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return scheduledPolls != null;
+	}
+
+	/**
+	 * Stops polling and shuts down the default scheduler, if this bus created it
+	 */
+	@Override
+	public void close() {
+		stop();
+		if (ownsScheduler) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private long maxId(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery(maxIdSql)) {
+			return rows.next() ? rows.getLong(1) : 0L;
+		}
+	}
+
+	private static ScheduledExecutorService defaultScheduler() {
+		return new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread thread = new Thread(runnable, "authorities-invalidation-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
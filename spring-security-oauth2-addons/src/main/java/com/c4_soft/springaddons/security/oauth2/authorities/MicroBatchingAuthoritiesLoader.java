@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * {@link AuthoritiesLoader} gathering the subjects requested within a short window into a single
+ * {@link BulkAuthoritiesLoader} call, results being then dispatched to waiting callers. This turns login storms (many
+ * distinct users at once) into a few bulk queries instead of one query per user.
+ * </p>
+ * <p>
+ * A batch is sent when {@code window} elapsed since its first subject or when it holds {@code maxBatchSize} subjects,
+ * whichever comes first. Callers block until their batch is loaded: this is intended to be used behind a
+ * {@link CachingAuthoritiesProvider}, so that only cache misses pay for the window.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class MicroBatchingAuthoritiesLoader implements AuthoritiesLoader, AutoCloseable {
+
+	private final BulkAuthoritiesLoader bulkLoader;
+
+	private final long windowNanos;
+
+	private final int maxBatchSize;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final boolean ownsScheduler;
+
+	private final Object lock = new Object();
+
+	private Map<String, CompletableFuture<Collection<String>>> pending = new HashMap<>();
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAdder batchedSubjects = new LongAdder();
+
+	/**
+	 * With a 5ms window and batches of at most 100 subjects
+	 *
+	 * @param bulkLoader authorities source
+	 */
+	public MicroBatchingAuthoritiesLoader(BulkAuthoritiesLoader bulkLoader) {
+		this(bulkLoader, Duration.ofMillis(5), 100);
+	}
+
+	/**
+	 * @param bulkLoader authorities source
+	 * @param window maximum time a subject waits for others before its batch is sent
+	 * @param maxBatchSize maximum number of subjects per bulk request (think of database limits on {@code IN} clauses)
+	 */
+	public MicroBatchingAuthoritiesLoader(BulkAuthoritiesLoader bulkLoader, Duration window, int maxBatchSize) {
+		this(bulkLoader, window, maxBatchSize, null);
+	}
+
+	/**
+	 * @param bulkLoader authorities source
+	 * @param window maximum time a subject waits for others before its batch is sent
+	 * @param maxBatchSize maximum number of subjects per bulk request (think of database limits on {@code IN} clauses)
+	 * @param scheduler runs bulk requests. If null, one with two daemon threads is created (and then shut down by
+	 *        {@link #close()})
+	 */
+	public MicroBatchingAuthoritiesLoader(
+			BulkAuthoritiesLoader bulkLoader,
+			Duration window,
+			int maxBatchSize,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(bulkLoader, "bulkLoader can't be null");
+		Assert.isTrue(window != null && !window.isNegative(), "window can't be negative");
+		Assert.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+		this.bulkLoader = bulkLoader;
+		this.windowNanos = window.toNanos();
+		this.maxBatchSize = maxBatchSize;
+		this.ownsScheduler = scheduler == null;
+		this.scheduler = scheduler == null ? defaultScheduler() : scheduler;
+	}
+
+	@Override
+	public Collection<String> loadAuthorities(String subject) {
+		Assert.notNull(subject, "subject can't be null");
+		final CompletableFuture<Collection<String>> result;
+		Map<String, CompletableFuture<Collection<String>>> toSend = null;
+		synchronized (lock) {
+			final CompletableFuture<Collection<String>> existing = pending.get(subject);
+			if (existing != null) {
+				result = existing;
+			} else {
+				result = new CompletableFuture<>();
+				pending.put(subject, result);
+				if (pending.size() >= maxBatchSize) {
+					toSend = takePending();
+				} else if (scheduledFlush == null) {
+					scheduledFlush = trySchedule(this::flush, windowNanos);
+					if (scheduledFlush == null) {
+						toSend = takePending();
+					}
+				}
+			}
+		}
+		if (toSend != null) {
+			final Map<String, CompletableFuture<Collection<String>>> batch = toSend;
+			if (trySchedule(() -> load(batch), 0L) == null) {
+				// scheduler is shut down: run on caller thread (lock released) rather than leave callers waiting forever
+				load(batch);
+			}
+		}
+		try {
+			return result.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	public long getBatchedSubjectCount() {
+		return batchedSubjects.sum();
+	}
+
+	/**
+	 * Fails pending loads and shuts down the default scheduler, if this loader created it
+	 */
+	@Override
+	public void close() {
+		final Map<String, CompletableFuture<Collection<String>>> batch;
+		synchronized (lock) {
+			batch = takePending();
+		}
+		final IllegalStateException closed = new IllegalStateException("Authorities loader is closed");
+		batch.values().forEach(result -> result.completeExceptionally(closed));
+		if (ownsScheduler) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Must be called with lock held
+	 */
+	private Map<String, CompletableFuture<Collection<String>>> takePending() {
+		final Map<String, CompletableFuture<Collection<String>>> batch = pending;
+		pending = new HashMap<>();
+		if (scheduledFlush != null) {
+			// if already running, the flush will just send a smaller batch
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		return batch;
+	}
+
+	private void flush() {
+		final Map<String, CompletableFuture<Collection<String>>> batch;
+		synchronized (lock) {
+			batch = pending;
+			pending = new HashMap<>();
+			scheduledFlush = null;
+		}
+		if (!batch.isEmpty()) {
+			load(batch);
+		}
+	}
+
+	private void load(Map<String, CompletableFuture<Collection<String>>> batch) {
+		batches.increment();
+		batchedSubjects.add(batch.size());
+		final Map<String, ? extends Collection<String>> loaded;
+		try {
+			loaded = bulkLoader.loadAuthorities(List.copyOf(batch.keySet()));
+		} catch (final RuntimeException | Error e) {
+			batch.values().forEach(result -> result.completeExceptionally(e));
+			return;
+		}
+		batch.forEach((subject, result) -> {
+			final Collection<String> authorities = loaded == null ? null : loaded.get(subject);
+			result.complete(authorities == null ? List.of() : authorities);
+		});
+	}
+
+	/**
+	 * @return null if the scheduler rejected the task
+	 */
+	private ScheduledFuture<?> trySchedule(Runnable task, long delayNanos) {
+		try {
+			return scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+		} catch (final RejectedExecutionException e) {
+			return null;
+		}
+	}
+
+	private static ScheduledExecutorService defaultScheduler() {
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2, runnable -> {
+			final Thread thread = new Thread(runnable, "authorities-batch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		return scheduler;
+	}
+}
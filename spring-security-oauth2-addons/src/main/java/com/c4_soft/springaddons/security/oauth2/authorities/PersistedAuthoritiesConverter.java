@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+/**
+ * Authorities converter for applications storing authorities themselves (instead of in the authorization-server):
+ * authorities are retrieved by token subject from a {@link CachingAuthoritiesProvider}.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class PersistedAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+	private final CachingAuthoritiesProvider authoritiesProvider;
+
+	private final Converter<Jwt, String> subjectExtractor;
+
+	public PersistedAuthoritiesConverter(CachingAuthoritiesProvider authoritiesProvider) {
+		this(authoritiesProvider, Jwt::getSubject);
+	}
+
+	/**
+	 * @param authoritiesProvider authorities source
+	 * @param subjectExtractor how to retrieve the authorities key from the token ({@code sub} claim by default)
+	 */
+	public PersistedAuthoritiesConverter(
+			CachingAuthoritiesProvider authoritiesProvider,
+			Converter<Jwt, String> subjectExtractor) {
+		Assert.notNull(authoritiesProvider, "authoritiesProvider can't be null");
+		Assert.notNull(subjectExtractor, "subjectExtractor can't be null");
+		this.authoritiesProvider = authoritiesProvider;
+		this.subjectExtractor = subjectExtractor;
+	}
+
+	@Override
+	public Collection<GrantedAuthority> convert(Jwt jwt) {
+		final String subject = subjectExtractor.convert(jwt);
+		return subject == null ? Set.of() : authoritiesProvider.getAuthorities(subject);
+	}
+}
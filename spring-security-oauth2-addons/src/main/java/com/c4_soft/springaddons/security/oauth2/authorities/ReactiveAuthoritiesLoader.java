@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * <p>
+ * Non-blocking counterpart of {@link AuthoritiesLoader}, for authorities stores with a reactive driver. For instance,
+ * with Spring Data R2DBC:
+ * </p>
+ *
+ * <pre>
+ * subject -&gt; databaseClient.execute("SELECT authority FROM user_authority WHERE user_subject = :subject")
+ * 		.bind("subject", subject)
+ * 		.map(row -&gt; row.get("authority", String.class))
+ * 		.all()
+ * </pre>
+ * <p>
+ * Requires {@code io.projectreactor:reactor-core} on the class-path (optional dependency of this lib).
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@FunctionalInterface
+public interface ReactiveAuthoritiesLoader {
+
+	/**
+	 * @param subject user subject (as in {@code sub} claim)
+	 * @return authorities names granted to {@code subject}, empty if none
+	 */
+	Flux<String> loadAuthorities(String subject);
+}
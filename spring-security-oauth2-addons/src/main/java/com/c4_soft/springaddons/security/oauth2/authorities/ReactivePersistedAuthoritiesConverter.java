@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Reactive counterpart of {@link PersistedAuthoritiesConverter}: cache hits are served on subscribing thread, misses
+ * call the (blocking) {@link AuthoritiesLoader} on a dedicated scheduler ({@link Schedulers#boundedElastic()} by
+ * default).
+ * </p>
+ * <p>
+ * All subscribers waiting for the same subject share the single in-flight load of {@link CachingAuthoritiesProvider}.
+ * A subscriber cancelling does not cancel this load for others.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactivePersistedAuthoritiesConverter implements ReactiveAuthoritiesConverter {
+
+	private final CachingAuthoritiesProvider authoritiesProvider;
+
+	private final Converter<Jwt, String> subjectExtractor;
+
+	private final Scheduler scheduler;
+
+	public ReactivePersistedAuthoritiesConverter(CachingAuthoritiesProvider authoritiesProvider) {
+		this(authoritiesProvider, Jwt::getSubject, Schedulers.boundedElastic());
+	}
+
+	/**
+	 * @param authoritiesProvider authorities source
+	 * @param subjectExtractor how to retrieve the authorities key from the token ({@code sub} claim by default)
+	 * @param scheduler where to call the {@link AuthoritiesLoader} on cache miss. Should be bounded
+	 */
+	public ReactivePersistedAuthoritiesConverter(
+			CachingAuthoritiesProvider authoritiesProvider,
+			Converter<Jwt, String> subjectExtractor,
+			Scheduler scheduler) {
+		Assert.notNull(authoritiesProvider, "authoritiesProvider can't be null");
+		Assert.notNull(subjectExtractor, "subjectExtractor can't be null");
+		Assert.notNull(scheduler, "scheduler can't be null");
+		this.authoritiesProvider = authoritiesProvider;
+		this.subjectExtractor = subjectExtractor;
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public Mono<Collection<GrantedAuthority>> convert(Jwt jwt) {
+		return Mono.defer(() -> {
+			final String subject = subjectExtractor.convert(jwt);
+			if (subject == null) {
+				return Mono.just(Set.of());
+			}
+			return Mono.fromFuture(authoritiesProvider.getAuthoritiesAsync(subject, scheduler::schedule));
+		});
+	}
+}
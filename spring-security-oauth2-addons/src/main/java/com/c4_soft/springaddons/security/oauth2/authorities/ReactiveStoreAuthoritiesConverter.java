@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.GrantedAuthoritiesCache;
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Reactive authorities converter reading authorities by token subject from a non-blocking store (R2DBC, reactive
+ * MongoDB, remote service with {@code WebClient}, ...): nothing is offloaded and no thread waits for I/O.
+ * </p>
+ * <p>
+ * There is no caching: each conversion subscribes to the {@link ReactiveAuthoritiesLoader}. Authorities (and authority
+ * sets) are however shared between tokens through a {@link GrantedAuthoritiesCache}. Prefer
+ * {@link ReactivePersistedAuthoritiesConverter} for blocking stores.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactiveStoreAuthoritiesConverter implements ReactiveAuthoritiesConverter {
+
+	private final ReactiveAuthoritiesLoader loader;
+
+	private final Converter<Jwt, String> subjectExtractor;
+
+	private final GrantedAuthoritiesCache authoritiesCache;
+
+	public ReactiveStoreAuthoritiesConverter(ReactiveAuthoritiesLoader loader) {
+		this(loader, Jwt::getSubject, new GrantedAuthoritiesCache("", 1024, 4096));
+	}
+
+	/**
+	 * @param loader authorities source
+	 * @param subjectExtractor how to retrieve the authorities key from the token ({@code sub} claim by default)
+	 * @param authoritiesCache turns authorities names into shared {@link GrantedAuthority} sets (may add a prefix)
+	 */
+	public ReactiveStoreAuthoritiesConverter(
+			ReactiveAuthoritiesLoader loader,
+			Converter<Jwt, String> subjectExtractor,
+			GrantedAuthoritiesCache authoritiesCache) {
+		Assert.notNull(loader, "loader can't be null");
+		Assert.notNull(subjectExtractor, "subjectExtractor can't be null");
+		Assert.notNull(authoritiesCache, "authoritiesCache can't be null");
+		this.loader = loader;
+		this.subjectExtractor = subjectExtractor;
+		this.authoritiesCache = authoritiesCache;
+	}
+
+	@Override
+	public Mono<Collection<GrantedAuthority>> convert(Jwt jwt) {
+		return Mono.defer(() -> {
+			final String subject = subjectExtractor.convert(jwt);
+			if (subject == null) {
+				return Mono.just(Set.of());
+			}
+			return loader.loadAuthorities(subject).collectList().map(authoritiesCache::authorities);
+		});
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.keycloak;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.ClaimNames;
+import com.c4_soft.springaddons.security.oauth2.ClaimPath;
+import com.c4_soft.springaddons.security.oauth2.GrantedAuthoritiesCache;
+import com.c4_soft.springaddons.security.oauth2.RoleHierarchyClosure;
+
+/**
+ * <p>
+ * Turns Keycloak realm roles ({@code realm_access.roles}) and client roles ({@code resource_access.<client>.roles})
+ * into authorities, each source with its own prefix and case rule:
+ * </p>
+ *
+ * <pre>
+ * new KeycloakClientRolesAuthoritiesConverter(
+ * 		Mapping.realmRoles("ROLE_", RoleCase.UNCHANGED),
+ * 		Mapping.clientRoles("my-client", "MY_CLIENT_", RoleCase.UPPER),
+ * 		Mapping.clientRoles("other-client", "", RoleCase.LOWER));
+ * </pre>
+ * <p>
+ * Mappings are compiled once, in the constructor: claim paths are parsed and each mapping gets its own
+ * {@link GrantedAuthoritiesCache}, so that prefixing and case conversion happen once per role, not per request.
+ * Conversion is a single pass over the mappings, each one being a couple of map lookups. Missing or malformed claims
+ * are ignored. Returned collections are immutable.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class KeycloakClientRolesAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+	private static final ClaimPath RESOURCE_ACCESS = ClaimPath.compile(ClaimNames.RESOURCE_ACCESS);
+
+	private final CompiledMapping[] realmMappings;
+
+	private final CompiledMapping[] clientMappings;
+
+	public KeycloakClientRolesAuthoritiesConverter(Mapping... mappings) {
+		this(Arrays.asList(mappings));
+	}
+
+	/**
+	 * @param mappings roles sources and how to turn it into authorities
+	 * @param maxAuthorities maximum number of cached authorities per mapping
+	 * @param maxSets maximum number of cached authorities sets per mapping
+	 */
+	public KeycloakClientRolesAuthoritiesConverter(Collection<Mapping> mappings, int maxAuthorities, int maxSets) {
+		this(mappings, RoleHierarchyClosure.none(), maxAuthorities, maxSets);
+	}
+
+	/**
+	 * @param mappings roles sources and how to turn it into authorities
+	 * @param hierarchy expansion applied to mapped authorities (prefix included). It is shared by all mappings: a
+	 *        client authority can reach a realm one
+	 * @param maxAuthorities maximum number of cached authorities per mapping
+	 * @param maxSets maximum number of cached authorities sets per mapping
+	 */
+	public KeycloakClientRolesAuthoritiesConverter(
+			Collection<Mapping> mappings,
+			RoleHierarchyClosure hierarchy,
+			int maxAuthorities,
+			int maxSets) {
+		Assert.notEmpty(mappings, "at least one mapping is required");
+		Assert.notNull(hierarchy, "hierarchy can't be null");
+		this.realmMappings = mappings.stream()
+				.filter(m -> m.clientId == null)
+				.map(m -> new CompiledMapping(m, hierarchy, maxAuthorities, maxSets))
+				.toArray(CompiledMapping[]::new);
+		this.clientMappings = mappings.stream()
+				.filter(m -> m.clientId != null)
+				.map(m -> new CompiledMapping(m, hierarchy, maxAuthorities, maxSets))
+				.toArray(CompiledMapping[]::new);
+	}
+
+	public KeycloakClientRolesAuthoritiesConverter(Collection<Mapping> mappings) {
+		this(mappings, 1024, 4096);
+	}
+
+	@Override
+	public Collection<GrantedAuthority> convert(Jwt jwt) {
+		final Map<String, Object> claims = jwt.getClaims();
+		Set<GrantedAuthority> authorities = Set.of();
+		for (final CompiledMapping mapping : realmMappings) {
+			authorities = union(authorities, mapping.convert(claims));
+		}
+		if (clientMappings.length > 0) {
+			@SuppressWarnings("unchecked")
+			final Map<String, ?> resourceAccess = RESOURCE_ACCESS.get(claims, Map.class);
+			for (int i = 0; resourceAccess != null && i < clientMappings.length; ++i) {
+				authorities = union(authorities, clientMappings[i].convert(resourceAccess));
+			}
+		}
+		return authorities;
+	}
+
+	/**
+	 * Only allocates when both sets are non-empty: a single contributing mapping returns the set shared by its cache
+	 */
+	private static Set<GrantedAuthority> union(Set<GrantedAuthority> a, Set<GrantedAuthority> b) {
+		if (b.isEmpty()) {
+			return a;
+		}
+		if (a.isEmpty()) {
+			return b;
+		}
+		final Set<GrantedAuthority> union = new HashSet<>(a);
+		union.addAll(b);
+		return Collections.unmodifiableSet(union);
+	}
+
+	public static enum RoleCase {
+		UNCHANGED(UnaryOperator.identity()),
+		UPPER(role -> role.toUpperCase(Locale.ROOT)),
+		LOWER(role -> role.toLowerCase(Locale.ROOT));
+
+		private final UnaryOperator<String> transformation;
+
+		RoleCase(UnaryOperator<String> transformation) {
+			this.transformation = transformation;
+		}
+	}
+
+	/**
+	 * A roles source and the rules to turn its roles into authorities
+	 */
+	public static final class Mapping {
+		private final String clientId;
+
+		private final String prefix;
+
+		private final RoleCase roleCase;
+
+		private Mapping(String clientId, String prefix, RoleCase roleCase) {
+			Assert.notNull(prefix, "prefix can't be null (but can be empty)");
+			Assert.notNull(roleCase, "roleCase can't be null");
+			this.clientId = clientId;
+			this.prefix = prefix;
+			this.roleCase = roleCase;
+		}
+
+		/**
+		 * @param prefix prepended to roles
+		 * @param roleCase applied to roles before prefixing
+		 * @return mapping for {@code realm_access.roles}
+		 */
+		public static Mapping realmRoles(String prefix, RoleCase roleCase) {
+			return new Mapping(null, prefix, roleCase);
+		}
+
+		/**
+		 * @param clientId Keycloak client ID
+		 * @param prefix prepended to roles
+		 * @param roleCase applied to roles before prefixing
+		 * @return mapping for {@code resource_access.<clientId>.roles}
+		 */
+		public static Mapping clientRoles(String clientId, String prefix, RoleCase roleCase) {
+			Assert.hasLength(clientId, "clientId can't be empty");
+			return new Mapping(clientId, prefix, roleCase);
+		}
+	}
+
+	private static final class CompiledMapping {
+		private final ClaimPath rolesPath;
+
+		private final GrantedAuthoritiesCache authorities;
+
+		CompiledMapping(Mapping mapping, RoleHierarchyClosure hierarchy, int maxAuthorities, int maxSets) {
+			// realm roles are read from claims root, client ones from resource_access
+			this.rolesPath = ClaimPath.compile(
+					mapping.clientId == null
+							? ClaimNames.REALM_ACCESS + '.' + ClaimNames.ROLES
+							: mapping.clientId.replace(".", "\\.") + '.' + ClaimNames.ROLES);
+			this.authorities = new GrantedAuthoritiesCache(
+					mapping.prefix,
+					mapping.roleCase.transformation,
+					hierarchy,
+					maxAuthorities,
+					maxSets);
+		}
+
+		Set<GrantedAuthority> convert(Map<String, ?> claims) {
+			return authorities.authorities(rolesPath.get(claims, List.class));
+		}
+	}
+
+}
@@ -1,26 +1,46 @@
 package com.c4_soft.springaddons.security.oauth2.keycloak;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.function.UnaryOperator;
 
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 
-import net.minidev.json.JSONArray;
-import net.minidev.json.JSONObject;
+import com.c4_soft.springaddons.security.oauth2.ClaimPath;
+import com.c4_soft.springaddons.security.oauth2.GrantedAuthoritiesCache;
+import com.c4_soft.springaddons.security.oauth2.RoleHierarchyClosure;
 
+/**
+ * Turns Keycloak realm roles into {@code ROLE_} prefixed authorities. Authorities and authorities sets are shared
+ * between tokens with the same roles (see {@link GrantedAuthoritiesCache}): returned collections are immutable.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
 public class KeycloakEmbeddedAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
 
+	private static final ClaimPath REALM_ROLES = ClaimPath.compile("realm_access.roles");
+
+	private final GrantedAuthoritiesCache authoritiesCache;
+
+	public KeycloakEmbeddedAuthoritiesConverter() {
+		this(new GrantedAuthoritiesCache("ROLE_", 1024, 4096));
+	}
+
+	/**
+	 * @param hierarchy expansion applied to {@code ROLE_} prefixed authorities
+	 */
+	public KeycloakEmbeddedAuthoritiesConverter(RoleHierarchyClosure hierarchy) {
+		this(new GrantedAuthoritiesCache("ROLE_", UnaryOperator.identity(), hierarchy, 1024, 4096));
+	}
+
+	public KeycloakEmbeddedAuthoritiesConverter(GrantedAuthoritiesCache authoritiesCache) {
+		this.authoritiesCache = authoritiesCache;
+	}
+
 	@Override
 	public Collection<GrantedAuthority> convert(Jwt jwt) {
-		final var realmAccess = (JSONObject) jwt.getClaims().get("realm_access");
-		final var roles = (JSONArray) realmAccess.get("roles");
-		return roles.stream()
-				.map(Object::toString)
-				.map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-				.collect(Collectors.toSet());
+		return authoritiesCache.authorities(REALM_ROLES.get(jwt.getClaims(), Collection.class));
 	}
 
 }
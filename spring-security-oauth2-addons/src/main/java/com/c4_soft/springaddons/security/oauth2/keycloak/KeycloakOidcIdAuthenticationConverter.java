@@ -21,21 +21,43 @@ import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 
+import com.c4_soft.springaddons.security.oauth2.oidc.JwtOidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcId;
 import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
-import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdBuilder;
 
+/**
+ * <p>
+ * Turns a {@link Jwt} into an {@link OidcIdAuthenticationToken}.
+ * </p>
+ * <p>
+ * By default, the {@link OidcId} is a {@link JwtOidcId}: a view of already decoded {@link Jwt} claims. An alternate
+ * {@link OidcId} factory can be provided, for instance {@code jwt -> OidcId.fromTokenValue(jwt.getTokenValue())} to
+ * get claims lazily parsed from raw token payload when the {@link Jwt} comes from a decoder which does not parse all
+ * claims.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
 public class KeycloakOidcIdAuthenticationConverter implements Converter<Jwt, OidcIdAuthenticationToken> {
 
 	private final Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter;
 
+	private final Converter<Jwt, ? extends OidcId> oidcIdConverter;
+
 	public KeycloakOidcIdAuthenticationConverter(Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter) {
+		this(authoritiesConverter, JwtOidcId::new);
+	}
+
+	public KeycloakOidcIdAuthenticationConverter(
+			Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter,
+			Converter<Jwt, ? extends OidcId> oidcIdConverter) {
 		super();
 		this.authoritiesConverter = authoritiesConverter;
+		this.oidcIdConverter = oidcIdConverter;
 	}
 
 	@Override
 	public OidcIdAuthenticationToken convert(Jwt jwt) {
-		final var token = new OidcIdBuilder(jwt.getClaims()).build();
-		return new OidcIdAuthenticationToken(token, authoritiesConverter.convert(jwt));
+		return new OidcIdAuthenticationToken(oidcIdConverter.convert(jwt), authoritiesConverter.convert(jwt));
 	}
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.keycloak;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link KeycloakJwtAuthenticationTokenConverter}: authorities are retrieved from a reactive
+ * source (see {@link ReactiveAuthoritiesConverter} to adapt synchronous ones).
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactiveKeycloakJwtAuthenticationTokenConverter implements Converter<Jwt, Mono<JwtAuthenticationToken>> {
+
+	private final Converter<Jwt, Mono<Collection<GrantedAuthority>>> authoritiesConverter;
+
+	public ReactiveKeycloakJwtAuthenticationTokenConverter(
+			Converter<Jwt, Mono<Collection<GrantedAuthority>>> authoritiesConverter) {
+		Assert.notNull(authoritiesConverter, "authoritiesConverter can't be null");
+		this.authoritiesConverter = authoritiesConverter;
+	}
+
+	@Override
+	public Mono<JwtAuthenticationToken> convert(Jwt jwt) {
+		return authoritiesConverter.convert(jwt)
+				.defaultIfEmpty(Set.of())
+				.map(
+						authorities -> new JwtAuthenticationToken(
+								jwt,
+								authorities,
+								jwt.getClaimAsString(StandardClaimNames.PREFERRED_USERNAME)));
+	}
+}
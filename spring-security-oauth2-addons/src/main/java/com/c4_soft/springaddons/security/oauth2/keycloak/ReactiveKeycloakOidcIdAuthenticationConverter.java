@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.keycloak;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.oidc.JwtOidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link KeycloakOidcIdAuthenticationConverter}: authorities are retrieved from a reactive
+ * source (see {@link ReactiveAuthoritiesConverter} to adapt synchronous ones). The {@link OidcId} is built when
+ * authorities are available, on the thread emitting it.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactiveKeycloakOidcIdAuthenticationConverter
+		implements
+		Converter<Jwt, Mono<OidcIdAuthenticationToken>> {
+
+	private final Converter<Jwt, Mono<Collection<GrantedAuthority>>> authoritiesConverter;
+
+	private final Converter<Jwt, ? extends OidcId> oidcIdConverter;
+
+	public ReactiveKeycloakOidcIdAuthenticationConverter(
+			Converter<Jwt, Mono<Collection<GrantedAuthority>>> authoritiesConverter) {
+		this(authoritiesConverter, JwtOidcId::new);
+	}
+
+	public ReactiveKeycloakOidcIdAuthenticationConverter(
+			Converter<Jwt, Mono<Collection<GrantedAuthority>>> authoritiesConverter,
+			Converter<Jwt, ? extends OidcId> oidcIdConverter) {
+		Assert.notNull(authoritiesConverter, "authoritiesConverter can't be null");
+		Assert.notNull(oidcIdConverter, "oidcIdConverter can't be null");
+		this.authoritiesConverter = authoritiesConverter;
+		this.oidcIdConverter = oidcIdConverter;
+	}
+
+	@Override
+	public Mono<OidcIdAuthenticationToken> convert(Jwt jwt) {
+		return authoritiesConverter.convert(jwt)
+				.defaultIfEmpty(Set.of())
+				.map(authorities -> new OidcIdAuthenticationToken(oidcIdConverter.convert(jwt), authorities));
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.oidc;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * {@link OidcId} which is a read-only view of a decoded {@link Jwt} claims: nothing is copied when it is created and
+ * typed claims are converted on first access only.
+ * </p>
+ * <p>
+ * {@link org.springframework.security.oauth2.core.oidc.IdTokenClaimAccessor},
+ * {@link org.springframework.security.oauth2.core.oidc.StandardClaimAccessor} and {@link java.util.Map} contracts are
+ * the same as for any other {@link OidcId}, so it can be used as {@link OidcIdAuthenticationToken} token.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class JwtOidcId extends OidcId {
+
+	private final Jwt jwt;
+
+	public JwtOidcId(Jwt jwt) {
+		// Jwt claims are immutable: safe to wrap it without copy
+		super(nonNull(jwt).getClaims(), false);
+		this.jwt = jwt;
+	}
+
+	public Jwt getJwt() {
+		return jwt;
+	}
+
+	public String getTokenValue() {
+		return jwt.getTokenValue();
+	}
+
+	private static Jwt nonNull(Jwt jwt) {
+		Assert.notNull(jwt, "jwt can't be null");
+		return jwt;
+	}
+}
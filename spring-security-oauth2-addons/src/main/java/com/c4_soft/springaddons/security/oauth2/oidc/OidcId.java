@@ -1,19 +1,46 @@
 package com.c4_soft.springaddons.security.oauth2.oidc;
 
+import java.net.URL;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import org.springframework.security.oauth2.core.oidc.AddressStandardClaim;
 import org.springframework.security.oauth2.core.oidc.IdTokenClaimAccessor;
 import org.springframework.security.oauth2.core.oidc.StandardClaimAccessor;
 
+import com.c4_soft.springaddons.security.oauth2.JwtPayloadClaimSet;
 import com.c4_soft.springaddons.security.oauth2.UnmodifiableClaimSet;
 
+/**
+ * OpenID token claims. {@link org.springframework.security.oauth2.core.ClaimAccessor} conversions are done on first
+ * access only.
+ */
 public class OidcId extends UnmodifiableClaimSet implements IdTokenClaimAccessor, StandardClaimAccessor, Principal {
 
 	public OidcId(Map<String, Object> claims) {
 		super(claims);
 	}
 
+	/**
+	 * @param claims token claims
+	 * @param copy if false, {@code claims} is wrapped without copy: caller must guarantee it is not modified afterwards
+	 */
+	public OidcId(Map<String, Object> claims, boolean copy) {
+		super(claims, copy);
+	}
+
+	/**
+	 * @param tokenValue serialized JWT
+	 * @return an {@link OidcId} backed by raw token payload: claims are parsed only when accessed (see
+	 *         {@link JwtPayloadClaimSet})
+	 */
+	public static OidcId fromTokenValue(String tokenValue) {
+		return new OidcId(JwtPayloadClaimSet.fromTokenValue(tokenValue), false);
+	}
+
 	@Override
 	public Map<String, Object> getClaims() {
 		return this;
@@ -24,4 +51,67 @@ public class OidcId extends UnmodifiableClaimSet implements IdTokenClaimAccessor
 		return getPreferredUsername();
 	}
 
+	@Override
+	public Boolean getClaimAsBoolean(String claim) {
+		final Object parsed = getParsed(AccessorConversion.BOOLEAN, claim);
+		return parsed == null
+				? putParsed(AccessorConversion.BOOLEAN, claim, IdTokenClaimAccessor.super.getClaimAsBoolean(claim))
+				: unmask(parsed);
+	}
+
+	@Override
+	public Instant getClaimAsInstant(String claim) {
+		final Object parsed = getParsed(AccessorConversion.INSTANT, claim);
+		return parsed == null
+				? putParsed(AccessorConversion.INSTANT, claim, IdTokenClaimAccessor.super.getClaimAsInstant(claim))
+				: unmask(parsed);
+	}
+
+	@Override
+	public URL getClaimAsURL(String claim) {
+		final Object parsed = getParsed(AccessorConversion.URL, claim);
+		return parsed == null
+				? putParsed(AccessorConversion.URL, claim, IdTokenClaimAccessor.super.getClaimAsURL(claim))
+				: unmask(parsed);
+	}
+
+	@Override
+	public Map<String, Object> getClaimAsMap(String claim) {
+		final Object parsed = getParsed(AccessorConversion.MAP, claim);
+		if (parsed != null) {
+			return unmask(parsed);
+		}
+		final Map<String, Object> converted = IdTokenClaimAccessor.super.getClaimAsMap(claim);
+		return putParsed(AccessorConversion.MAP, claim, converted == null ? null : Collections.unmodifiableMap(converted));
+	}
+
+	@Override
+	public List<String> getClaimAsStringList(String claim) {
+		final Object parsed = getParsed(AccessorConversion.STRING_LIST, claim);
+		if (parsed != null) {
+			return unmask(parsed);
+		}
+		final List<String> converted = IdTokenClaimAccessor.super.getClaimAsStringList(claim);
+		return putParsed(
+				AccessorConversion.STRING_LIST,
+				claim,
+				converted == null ? null : Collections.unmodifiableList(converted));
+	}
+
+	@Override
+	public AddressStandardClaim getAddress() {
+		final Object parsed = getParsed(AccessorConversion.ADDRESS, "address");
+		return parsed == null
+				? putParsed(AccessorConversion.ADDRESS, "address", IdTokenClaimAccessor.super.getAddress())
+				: unmask(parsed);
+	}
+
+	/**
+	 * {@link org.springframework.security.oauth2.core.ClaimAccessor} conversions differ from {@link UnmodifiableClaimSet}
+	 * ones (supported source types, errors): cache it separately
+	 */
+	private static enum AccessorConversion {
+		BOOLEAN, INSTANT, URL, MAP, STRING_LIST, ADDRESS
+	}
+
 }
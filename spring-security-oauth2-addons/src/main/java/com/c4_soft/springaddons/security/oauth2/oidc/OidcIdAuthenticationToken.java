@@ -17,11 +17,21 @@ import java.util.Collection;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 
+import com.c4_soft.springaddons.security.oauth2.NameBitSet;
+import com.c4_soft.springaddons.security.oauth2.NameVocabulary;
+
 public class OidcIdAuthenticationToken extends AbstractAuthenticationToken {
 	private static final long serialVersionUID = -2827891205034221389L;
 
 	private final OidcId token;
 
+	/**
+	 * Lazily computed, 0 meaning "not yet"
+	 */
+	private transient int hash;
+
+	private transient volatile NameBitSet encodedAuthorities;
+
 	public OidcIdAuthenticationToken(OidcId token, Collection<? extends GrantedAuthority> authorities) {
 		super(authorities);
 		this.token = token;
@@ -33,6 +43,20 @@ public class OidcIdAuthenticationToken extends AbstractAuthenticationToken {
 		return token;
 	}
 
+	/**
+	 * @param vocabulary registered authorities
+	 * @return authorities encoded against {@code vocabulary} for bitwise checks (last encoding is kept)
+	 */
+	public NameBitSet getAuthorities(NameVocabulary vocabulary) {
+		final NameBitSet encoded = encodedAuthorities;
+		if (encoded != null && encoded.getVocabulary() == vocabulary) {
+			return encoded;
+		}
+		final NameBitSet fresh = vocabulary.encodeAuthorities(getAuthorities());
+		encodedAuthorities = fresh;
+		return fresh;
+	}
+
 	@Override
 	public Object getCredentials() {
 		return token;
@@ -43,12 +67,20 @@ public class OidcIdAuthenticationToken extends AbstractAuthenticationToken {
 		return token;
 	}
 
+	/**
+	 * Authorities, principal and credentials are immutable: hash only changes with {@link #setDetails(Object)} and
+	 * {@link #setAuthenticated(boolean)}, which reset it.
+	 */
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = super.hashCode();
-		result = prime * result + ((token == null) ? 0 : token.hashCode());
-		return result;
+		int h = hash;
+		if (h == 0) {
+			final int prime = 31;
+			h = super.hashCode();
+			h = prime * h + ((token == null) ? 0 : token.hashCode());
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -56,13 +88,13 @@ public class OidcIdAuthenticationToken extends AbstractAuthenticationToken {
 		if (this == obj) {
 			return true;
 		}
-		if (!super.equals(obj)) {
+		if (obj == null || getClass() != obj.getClass()) {
 			return false;
 		}
-		if (getClass() != obj.getClass()) {
+		final OidcIdAuthenticationToken other = (OidcIdAuthenticationToken) obj;
+		if (hash != 0 && other.hash != 0 && hash != other.hash) {
 			return false;
 		}
-		final OidcIdAuthenticationToken other = (OidcIdAuthenticationToken) obj;
 		if (token == null) {
 			if (other.token != null) {
 				return false;
@@ -70,7 +102,19 @@ public class OidcIdAuthenticationToken extends AbstractAuthenticationToken {
 		} else if (!token.equals(other.token)) {
 			return false;
 		}
-		return true;
+		return super.equals(obj);
+	}
+
+	@Override
+	public void setDetails(Object details) {
+		super.setDetails(details);
+		hash = 0;
+	}
+
+	@Override
+	public void setAuthenticated(boolean authenticated) {
+		super.setAuthenticated(authenticated);
+		hash = 0;
 	}
 
 }
\ No newline at end of file
@@ -17,9 +17,15 @@ package com.c4_soft.springaddons.security.oauth2.oidc;
 
 import java.net.URL;
 import java.time.Instant;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.springframework.security.oauth2.core.oidc.IdTokenClaimAccessor;
 import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
@@ -27,10 +33,24 @@ import org.springframework.security.oauth2.core.oidc.StandardClaimAccessor;
 import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
 import org.springframework.util.StringUtils;
 
+import com.c4_soft.springaddons.security.oauth2.ClaimNames;
 import com.c4_soft.springaddons.security.oauth2.ModifiableClaimSet;
 
 /**
+ * <p>
  * https://openid.net/specs/openid-connect-core-1_0.html
+ * </p>
+ * <p>
+ * {@link #build()} hands this builder storage over to the built {@link OidcId} (no copy). The builder is then sealed:
+ * any further modification attempt throws an {@link IllegalStateException} (<b>breaking change</b> since 2.0.4: builders
+ * used to remain modifiable). {@link #build()} can still be called several times: sealed storage is immutable and so
+ * shared by all built instances. Copy the builder first if you need to build tokens with different claims:
+ * {@code new OidcIdBuilder(builder).subject("other").build()}.
+ * </p>
+ * <p>
+ * Dates are stored as seconds since epoch ({@link Long}), so that {@link #getAsEpochSecond(String)} reads them
+ * without parsing nor allocation.
+ * </p>
  *
  * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
  */
@@ -38,12 +58,16 @@ public class OidcIdBuilder extends ModifiableClaimSet implements IdTokenClaimAcc
 
 	private static final long serialVersionUID = 8050195176203128543L;
 
+	private boolean built = false;
+
 	public OidcIdBuilder() {
 		super();
 	}
 
 	public OidcIdBuilder(Map<String, Object> other) {
-		super(other);
+		super(Math.max((int) (other.size() / .75f) + 1, 16));
+		// not super(other): HashMap copy constructor bypasses put (and so claim names interning)
+		putAll(other);
 	}
 
 	@Override
@@ -51,8 +75,17 @@ public class OidcIdBuilder extends ModifiableClaimSet implements IdTokenClaimAcc
 		return this;
 	}
 
+	/**
+	 * @return an {@link OidcId} wrapping this builder storage. This builder can't be modified afterwards, but can be
+	 *         built again.
+	 */
 	public OidcId build() {
-		return new OidcId(this);
+		built = true;
+		return new OidcId(this, false);
+	}
+
+	public boolean isBuilt() {
+		return built;
 	}
 
 	public OidcIdBuilder issuer(URL issuer) {
@@ -71,14 +104,41 @@ public class OidcIdBuilder extends ModifiableClaimSet implements IdTokenClaimAcc
 		return setIfNonEmpty(IdTokenClaimNames.EXP, expiresAt);
 	}
 
+	/**
+	 * @param epochSecond seconds since epoch
+	 * @return this builder
+	 */
+	public OidcIdBuilder expiresAt(long epochSecond) {
+		this.put(IdTokenClaimNames.EXP, epochSecond);
+		return this;
+	}
+
 	public OidcIdBuilder issuedAt(Instant issuedAt) {
 		return setIfNonEmpty(IdTokenClaimNames.IAT, issuedAt);
 	}
 
+	/**
+	 * @param epochSecond seconds since epoch
+	 * @return this builder
+	 */
+	public OidcIdBuilder issuedAt(long epochSecond) {
+		this.put(IdTokenClaimNames.IAT, epochSecond);
+		return this;
+	}
+
 	public OidcIdBuilder authTime(Instant authTime) {
 		return setIfNonEmpty(IdTokenClaimNames.AUTH_TIME, authTime);
 	}
 
+	/**
+	 * @param epochSecond seconds since epoch
+	 * @return this builder
+	 */
+	public OidcIdBuilder authTime(long epochSecond) {
+		this.put(IdTokenClaimNames.AUTH_TIME, epochSecond);
+		return this;
+	}
+
 	public OidcIdBuilder nonce(String nonce) {
 		return setIfNonEmpty(IdTokenClaimNames.NONCE, nonce);
 	}
@@ -173,7 +233,120 @@ public class OidcIdBuilder extends ModifiableClaimSet implements IdTokenClaimAcc
 	}
 
 	public OidcIdBuilder updatedAt(Instant value) {
-		return setIfNonEmpty("", value);
+		return setIfNonEmpty(StandardClaimNames.UPDATED_AT, value);
+	}
+
+	/**
+	 * @param epochSecond seconds since epoch
+	 * @return this builder
+	 */
+	public OidcIdBuilder updatedAt(long epochSecond) {
+		this.put(StandardClaimNames.UPDATED_AT, epochSecond);
+		return this;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		assertNotBuilt();
+		return super.put(ClaimNames.intern(key), value);
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends Object> m) {
+		assertNotBuilt();
+		// not super.putAll(m): HashMap implementation bypasses put (and so claim names interning)
+		m.forEach(this::put);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		assertNotBuilt();
+		return super.remove(key);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		assertNotBuilt();
+		return super.remove(key, value);
+	}
+
+	@Override
+	public void clear() {
+		assertNotBuilt();
+		super.clear();
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value) {
+		assertNotBuilt();
+		return super.putIfAbsent(ClaimNames.intern(key), value);
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue) {
+		assertNotBuilt();
+		return super.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public Object replace(String key, Object value) {
+		assertNotBuilt();
+		return super.replace(key, value);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+		assertNotBuilt();
+		super.replaceAll(function);
+	}
+
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction) {
+		assertNotBuilt();
+		return super.computeIfAbsent(ClaimNames.intern(key), mappingFunction);
+	}
+
+	@Override
+	public Object
+			computeIfPresent(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+		assertNotBuilt();
+		return super.computeIfPresent(key, remappingFunction);
+	}
+
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+		assertNotBuilt();
+		return super.compute(ClaimNames.intern(key), remappingFunction);
+	}
+
+	@Override
+	public Object merge(
+			String key,
+			Object value,
+			BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+		assertNotBuilt();
+		return super.merge(ClaimNames.intern(key), value, remappingFunction);
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return built ? Collections.unmodifiableSet(super.keySet()) : super.keySet();
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return built ? Collections.unmodifiableCollection(super.values()) : super.values();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return built ? new SealedEntrySet() : super.entrySet();
+	}
+
+	private void assertNotBuilt() {
+		if (built) {
+			throw new IllegalStateException("OidcIdBuilder storage was handed over to an OidcId and can't be modified");
+		}
 	}
 
 	private OidcIdBuilder setIfNonEmpty(String claimName, String claimValue) {
@@ -214,6 +387,32 @@ public class OidcIdBuilder extends ModifiableClaimSet implements IdTokenClaimAcc
 		return this;
 	}
 
+	/**
+	 * Read-only entries view once storage was handed over
+	 */
+	private final class SealedEntrySet extends AbstractSet<Entry<String, Object>> {
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			final Iterator<Entry<String, Object>> delegate = OidcIdBuilder.super.entrySet().iterator();
+			return new Iterator<>() {
+				@Override
+				public boolean hasNext() {
+					return delegate.hasNext();
+				}
+
+				@Override
+				public Entry<String, Object> next() {
+					return new SimpleImmutableEntry<>(delegate.next());
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return OidcIdBuilder.this.size();
+		}
+	}
+
 	public static final class AddressClaim extends ModifiableClaimSet {
 		private static final long serialVersionUID = 28800769851008900L;
 
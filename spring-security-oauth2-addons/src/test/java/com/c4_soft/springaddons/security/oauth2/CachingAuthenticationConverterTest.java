@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import com.c4_soft.springaddons.security.oauth2.CachingAuthenticationConverter.KeyStrategy;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcId;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CachingAuthenticationConverterTest {
+
+	private static final Instant NOW = Instant.ofEpochSecond(1588000000L);
+
+	private final AtomicInteger conversions = new AtomicInteger();
+
+	private final Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter = jwt -> {
+		conversions.incrementAndGet();
+		return List.of(new SimpleGrantedAuthority("ROLE_USER"));
+	};
+
+	private final MutableClock clock = new MutableClock(NOW);
+
+	private CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter(
+			Converter<Jwt, ? extends Collection<GrantedAuthority>> authoritiesConverter,
+			KeyStrategy keyStrategy) {
+		return new CachingAuthenticationConverter<>(
+				jwt -> jwt,
+				authoritiesConverter,
+				(jwt, claims, authorities) -> new JwtAuthenticationToken(claims, authorities),
+				keyStrategy,
+				10,
+				clock);
+	}
+
+	private static Jwt jwt(String tokenValue, String jti, Instant exp) {
+		return Jwt.withTokenValue(tokenValue).header("alg", "none").subject("42").jti(jti).expiresAt(exp).build();
+	}
+
+	@Test
+	public void sameTokenIsConvertedOnce() {
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter =
+				converter(authoritiesConverter, KeyStrategy.TOKEN_DIGEST);
+
+		final JwtAuthenticationToken first = converter.convert(jwt("a.b.c", "1", NOW.plusSeconds(60)));
+		final JwtAuthenticationToken second = converter.convert(jwt("a.b.c", "1", NOW.plusSeconds(60)));
+		converter.convert(jwt("a.b.d", "1", NOW.plusSeconds(60)));
+
+		assertThat(second.getAuthorities()).isEqualTo(first.getAuthorities());
+		assertThat(conversions).hasValue(2);
+		assertThat(converter.getStats().getHits()).isEqualTo(1);
+		assertThat(converter.getStats().getMisses()).isEqualTo(2);
+		assertThat(converter.getStats().getSize()).isEqualTo(2);
+	}
+
+	@Test
+	public void entriesAreNotServedAfterExp() {
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter =
+				converter(authoritiesConverter, KeyStrategy.TOKEN_DIGEST);
+		final Jwt jwt = jwt("a.b.c", "1", NOW.plusSeconds(60));
+
+		converter.convert(jwt);
+		clock.instant = NOW.plusSeconds(60);
+		converter.convert(jwt);
+
+		assertThat(conversions).hasValue(2);
+		assertThat(converter.getStats().getHits()).isZero();
+	}
+
+	@Test
+	public void jtiCollisionsAreDetected() {
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter =
+				converter(authoritiesConverter, KeyStrategy.JTI);
+
+		converter.convert(jwt("a.b.c", "1", NOW.plusSeconds(60)));
+		converter.convert(jwt("a.b.c", "1", NOW.plusSeconds(60)));
+		assertThat(conversions).hasValue(1);
+		assertThat(converter.convert(jwt("x.y.z", "1", NOW.plusSeconds(60))).getToken().getTokenValue())
+				.isEqualTo("x.y.z");
+		assertThat(conversions).hasValue(2);
+	}
+
+	@Test
+	public void sizeIsBounded() {
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter =
+				converter(authoritiesConverter, KeyStrategy.TOKEN_DIGEST);
+
+		for (int i = 0; i < 25; ++i) {
+			converter.convert(jwt("a.b." + i, null, NOW.plusSeconds(60)));
+		}
+
+		assertThat(converter.getStats().getSize()).isLessThanOrEqualTo(10);
+		assertThat(converter.getStats().getEvictions()).isPositive();
+	}
+
+	@Test
+	public void failuresAreNotCached() {
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter = converter(jwt -> {
+			conversions.incrementAndGet();
+			throw new IllegalStateException("boom");
+		}, KeyStrategy.TOKEN_DIGEST);
+		final Jwt jwt = jwt("a.b.c", "1", NOW.plusSeconds(60));
+
+		assertThatThrownBy(() -> converter.convert(jwt)).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> converter.convert(jwt)).isInstanceOf(IllegalStateException.class);
+		assertThat(conversions).hasValue(2);
+	}
+
+	@Test
+	public void concurrentMissesAreCoalesced() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CachingAuthenticationConverter<Jwt, JwtAuthenticationToken> converter = converter(jwt -> {
+			conversions.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of(new SimpleGrantedAuthority("ROLE_USER"));
+		}, KeyStrategy.TOKEN_DIGEST);
+		final Jwt jwt = jwt("a.b.c", "1", NOW.plusSeconds(60));
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<JwtAuthenticationToken>> results = new ArrayList<>();
+			for (int i = 0; i < 8; ++i) {
+				results.add(executor.submit(() -> converter.convert(jwt)));
+			}
+			Thread.sleep(100);
+			release.countDown();
+
+			for (final Future<JwtAuthenticationToken> result : results) {
+				assertThat(result.get(5, TimeUnit.SECONDS).getAuthorities())
+						.containsExactly(new SimpleGrantedAuthority("ROLE_USER"));
+			}
+			assertThat(conversions).hasValue(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void authenticationsAreNotSharedBetweenCalls() {
+		final CachingAuthenticationConverter<OidcId, OidcIdAuthenticationToken> converter =
+				CachingAuthenticationConverter.oidcId(authoritiesConverter, 10);
+		// system clock
+		final Jwt jwt = jwt("a.b.c", "1", Instant.now().plusSeconds(60));
+
+		final OidcIdAuthenticationToken first = converter.convert(jwt);
+		first.setDetails("first request");
+		final OidcIdAuthenticationToken second = converter.convert(jwt);
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getDetails()).isSameAs(second.getToken());
+		assertThat(second.getToken()).isSameAs(first.getToken());
+		assertThat(second.getToken().getSubject()).isEqualTo("42");
+		assertThat(conversions).hasValue(1);
+	}
+
+	private static final class MutableClock extends Clock {
+		private volatile Instant instant;
+
+		MutableClock(Instant instant) {
+			this.instant = instant;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneId.of("UTC");
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
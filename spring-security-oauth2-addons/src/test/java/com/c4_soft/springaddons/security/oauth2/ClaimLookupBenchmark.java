@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Claim lookup latency with claim names freshly decoded from JSON (distinct {@link String} instances, as before
+ * {@link ClaimNames}) against interned ones. Lookups use constants, as accessors do.
+ * </p>
+ * <p>
+ * Not a unit test: run main from the IDE or with {@code exec:java -Dexec.classpathScope=test}.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimLookupBenchmark {
+
+	private static final String[] NAMES = {
+			"jti",
+			"exp",
+			"nbf",
+			"iat",
+			"iss",
+			"aud",
+			"sub",
+			"typ",
+			"azp",
+			"auth_time",
+			"session_state",
+			"acr",
+			"allowed-origins",
+			"realm_access",
+			"resource_access",
+			"scope",
+			"email_verified",
+			"name",
+			"preferred_username",
+			"given_name",
+			"family_name",
+			"email" };
+
+	private static final byte[] PREFERRED_USERNAME_UTF8 = "preferred_username".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] CUSTOM_NAME_UTF8 = "custom_user_attribute".getBytes(StandardCharsets.UTF_8);
+
+	private Map<String, Object> freshNamesHashMap;
+
+	private Map<String, Object> internedNamesHashMap;
+
+	private Map<String, Object> freshNamesCompact;
+
+	private Map<String, Object> internedNamesCompact;
+
+	@Setup
+	public void setup() {
+		freshNamesHashMap = new HashMap<>();
+		internedNamesHashMap = new HashMap<>();
+		for (final String name : NAMES) {
+			// new String(byte[]) is what JSON parsers do
+			freshNamesHashMap.put(new String(name.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), name);
+			internedNamesHashMap.put(ClaimNames.intern(name), name);
+		}
+		freshNamesCompact = new FreshNamesCompactClaimSet(freshNamesHashMap);
+		internedNamesCompact = new CompactClaimSet(freshNamesHashMap);
+	}
+
+	@Benchmark
+	public void freshNamesHashMap(Blackhole bh) {
+		lookup(freshNamesHashMap, bh);
+	}
+
+	@Benchmark
+	public void internedNamesHashMap(Blackhole bh) {
+		lookup(internedNamesHashMap, bh);
+	}
+
+	@Benchmark
+	public void freshNamesCompact(Blackhole bh) {
+		lookup(freshNamesCompact, bh);
+	}
+
+	@Benchmark
+	public void internedNamesCompact(Blackhole bh) {
+		lookup(internedNamesCompact, bh);
+	}
+
+	/**
+	 * Hash-code included: claim-sets compute it when storing the name, it is already cached in interned instances
+	 */
+	@Benchmark
+	public int decodeName() {
+		return new String(PREFERRED_USERNAME_UTF8, 0, PREFERRED_USERNAME_UTF8.length, StandardCharsets.UTF_8)
+				.hashCode();
+	}
+
+	@Benchmark
+	public int decodeAndInternName() {
+		return ClaimNames.intern(PREFERRED_USERNAME_UTF8, 0, PREFERRED_USERNAME_UTF8.length).hashCode();
+	}
+
+	@Benchmark
+	public int decodeCustomName() {
+		return new String(CUSTOM_NAME_UTF8, 0, CUSTOM_NAME_UTF8.length, StandardCharsets.UTF_8).hashCode();
+	}
+
+	@Benchmark
+	public int decodeAndInternCustomName() {
+		return ClaimNames.intern(CUSTOM_NAME_UTF8, 0, CUSTOM_NAME_UTF8.length).hashCode();
+	}
+
+	private static void lookup(Map<String, Object> claims, Blackhole bh) {
+		bh.consume(claims.get("sub"));
+		bh.consume(claims.get("preferred_username"));
+		bh.consume(claims.get("realm_access"));
+		bh.consume(claims.get("scope"));
+		bh.consume(claims.get("exp"));
+	}
+
+	/**
+	 * Compact layout without name interning (distinct key instances, equals on each lookup)
+	 */
+	private static final class FreshNamesCompactClaimSet extends AbstractMap<String, Object> {
+		private final String[] keys;
+
+		private final Object[] values;
+
+		FreshNamesCompactClaimSet(Map<String, Object> claims) {
+			keys = new String[OpenAddressing.capacity(claims.size())];
+			values = new Object[keys.length];
+			for (final Map.Entry<String, Object> claim : claims.entrySet()) {
+				final int slot = OpenAddressing.slot(keys, claim.getKey());
+				keys[slot] = claim.getKey();
+				values[slot] = claim.getValue();
+			}
+		}
+
+		@Override
+		public Object get(Object key) {
+			return values[OpenAddressing.slot(keys, (String) key)];
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ClaimLookupBenchmark.class.getSimpleName()).build()).run();
+	}
+}
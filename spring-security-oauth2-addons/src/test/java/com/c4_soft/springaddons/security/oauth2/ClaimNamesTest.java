@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.core.oidc.StandardClaimNames;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ClaimNamesTest {
+
+	@Test
+	public void wellKnownNamesAreCanonicalized() {
+		assertThat(ClaimNames.intern(new String("realm_access"))).isSameAs(ClaimNames.REALM_ACCESS);
+		assertThat(ClaimNames.intern(new String("preferred_username"))).isSameAs(StandardClaimNames.PREFERRED_USERNAME);
+
+		final byte[] json = "{\"sub\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+		assertThat(ClaimNames.intern(json, 2, 3)).isSameAs("sub");
+	}
+
+	@Test
+	public void otherNamesAreReturnedAsIs() {
+		final String unknown = new String("custom_claim");
+		assertThat(ClaimNames.intern(unknown)).isSameAs(unknown);
+		assertThat(ClaimNames.intern((String) null)).isNull();
+
+		final byte[] utf8 = "{\"sübject\":1}".getBytes(StandardCharsets.UTF_8);
+		assertThat(ClaimNames.intern(utf8, 2, utf8.length - 6)).isEqualTo("sübject");
+		assertThat(ClaimNames.intern("subx".getBytes(StandardCharsets.UTF_8), 0, 4)).isEqualTo("subx");
+		// same length and first byte as "sub": hashed and probed
+		assertThat(ClaimNames.intern("sux".getBytes(StandardCharsets.UTF_8), 0, 3)).isEqualTo("sux");
+		assertThat(ClaimNames.intern("éa".getBytes(StandardCharsets.UTF_8), 0, 3)).isEqualTo("éa");
+		assertThat(ClaimNames.intern(new byte[0], 0, 0)).isEmpty();
+		final String longName = "a_custom_claim_name_longer_than_any_symbol";
+		assertThat(ClaimNames.intern(longName.getBytes(StandardCharsets.UTF_8), 0, longName.length()))
+				.isEqualTo(longName);
+	}
+
+	@Test
+	public void claimSetsStoreCanonicalNames() {
+		final Map<String, Object> payload = new JwtPayloadClaimSet(
+				"{\"sub\":\"42\",\"scope\":\"a b\"}".getBytes(StandardCharsets.UTF_8));
+		final CompactClaimSet compact = CompactClaimSet.of(Map.of(new String("sub"), "42"));
+
+		assertThat(payload.keySet()).allMatch(name -> name == ClaimNames.intern(name));
+		assertThat(compact.keySet().iterator().next()).isSameAs("sub");
+	}
+}
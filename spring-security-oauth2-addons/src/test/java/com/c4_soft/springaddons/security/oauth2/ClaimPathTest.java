@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ClaimPathTest {
+
+	private final ClaimSet claims = new JwtPayloadClaimSet(
+			("{\"sub\":\"42\","
+					+ "\"realm_access\":{\"roles\":[\"offline_access\",\"USER\"]},"
+					+ "\"resource_access\":{\"my-client\":{\"roles\":[\"admin\"]},\"my.client\":{\"roles\":[\"dot\"]}}}")
+							.getBytes(StandardCharsets.UTF_8));
+
+	@Test
+	public void nestedClaimsAreResolved() {
+		assertThat(claims.getByPath("sub")).isEqualTo("42");
+		@SuppressWarnings("unchecked")
+		final Collection<String> roles = claims.getByPath("realm_access.roles", Collection.class);
+		assertThat(roles).containsExactly("offline_access", "USER");
+		assertThat(claims.getByPath("realm_access.roles.1")).isEqualTo("USER");
+		assertThat(claims.getByPath("resource_access.my-client.roles")).isEqualTo(List.of("admin"));
+		assertThat(claims.getByPath("resource_access.my\\.client.roles.0")).isEqualTo("dot");
+	}
+
+	@Test
+	public void missingOrWrongTypedSegmentsResolveToNull() {
+		assertThat(claims.getByPath("missing.roles")).isNull();
+		assertThat(claims.getByPath("realm_access.missing")).isNull();
+		assertThat(claims.getByPath("realm_access.roles.2")).isNull();
+		assertThat(claims.getByPath("realm_access.roles.first")).isNull();
+		assertThat(claims.getByPath("sub.roles")).isNull();
+		assertThat(claims.getByPath("realm_access", String.class)).isNull();
+	}
+
+	@Test
+	public void compiledPathsAreCached() {
+		assertThat(ClaimPath.compile("realm_access.roles")).isSameAs(ClaimPath.compile("realm_access.roles"));
+		assertThatThrownBy(() -> ClaimPath.compile("realm_access..roles")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Typed claims access: {@link ClaimSet} default methods (parse on each call) against {@link UnmodifiableClaimSet}
+ * (parse once).
+ * </p>
+ * <p>
+ * Not a unit test: run with {@code mvn test-compile exec:java -Dexec.mainClass=...ClaimSetBenchmark
+ * -Dexec.classpathScope=test} or from the IDE.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimSetBenchmark {
+
+	private ClaimSet modifiable;
+
+	private ClaimSet unmodifiable;
+
+	@Setup
+	public void setup() {
+		final Map<String, Object> claims = Map.of(
+				"exp",
+				Instant.now().getEpochSecond(),
+				"auth_time",
+				Instant.now().toString(),
+				"scope",
+				"openid profile email showcase",
+				"aud",
+				List.of("first-resource-server second-resource-server", "third-resource-server"),
+				"iss",
+				"https://localhost:8443/auth/realms/master",
+				"email_verified",
+				"true");
+		modifiable = new ModifiableClaimSet(claims);
+		unmodifiable = new UnmodifiableClaimSet(claims);
+	}
+
+	@Benchmark
+	public Instant defaultGetAsInstantFromLong() {
+		return modifiable.getAsInstant("exp");
+	}
+
+	@Benchmark
+	public Instant memoizedGetAsInstantFromLong() {
+		return unmodifiable.getAsInstant("exp");
+	}
+
+	@Benchmark
+	public Instant defaultGetAsInstantFromString() {
+		return modifiable.getAsInstant("auth_time");
+	}
+
+	@Benchmark
+	public Instant memoizedGetAsInstantFromString() {
+		return unmodifiable.getAsInstant("auth_time");
+	}
+
+	@Benchmark
+	public Set<String> defaultGetAsStringSetFromString() {
+		return modifiable.getAsStringSet("scope");
+	}
+
+	@Benchmark
+	public Set<String> memoizedGetAsStringSetFromString() {
+		return unmodifiable.getAsStringSet("scope");
+	}
+
+	@Benchmark
+	public Set<String> defaultGetAsStringSetFromCollection() {
+		return modifiable.getAsStringSet("aud");
+	}
+
+	@Benchmark
+	public Set<String> memoizedGetAsStringSetFromCollection() {
+		return unmodifiable.getAsStringSet("aud");
+	}
+
+	@Benchmark
+	public URI defaultGetAsUri() throws URISyntaxException {
+		return modifiable.getAsUri("iss");
+	}
+
+	@Benchmark
+	public URI memoizedGetAsUri() throws URISyntaxException {
+		return unmodifiable.getAsUri("iss");
+	}
+
+	@Benchmark
+	public Boolean defaultGetAsBoolean() {
+		return modifiable.getAsBoolean("email_verified");
+	}
+
+	@Benchmark
+	public Boolean memoizedGetAsBoolean() {
+		return unmodifiable.getAsBoolean("email_verified");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ClaimSetBenchmark.class.getSimpleName()).build()).run();
+	}
+}
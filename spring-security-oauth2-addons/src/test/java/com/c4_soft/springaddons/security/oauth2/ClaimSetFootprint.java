@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * <p>
+ * Heap retained by claim-set containers (keys and values excluded), measured with JOL: former
+ * {@code DelegatingMap(Collections.unmodifiableMap(new HashMap<>(claims)))} layout against {@link CompactClaimSet}.
+ * </p>
+ * <p>
+ * Not a unit test: run main from the IDE or with {@code exec:java -Dexec.classpathScope=test}.
+ * </p>
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ClaimSetFootprint {
+
+	public static void main(String[] args) {
+		for (final int claimsCount : new int[] { 5, 15, 22, 30 }) {
+			final Map<String, Object> claims = claims(claimsCount);
+			final GraphLayout keysAndValues =
+					GraphLayout.parseInstance(claims.keySet().toArray(), claims.values().toArray());
+
+			final var hashMapLayout = new DelegatingMap<>(Collections.unmodifiableMap(new HashMap<>(claims)));
+			final var compactLayout = new CompactClaimSet(claims);
+
+			System.out.println(String.format("%d claims:", claimsCount));
+			print("HashMap", GraphLayout.parseInstance(hashMapLayout), keysAndValues);
+			print("CompactClaimSet", GraphLayout.parseInstance(compactLayout), keysAndValues);
+		}
+	}
+
+	private static void print(String label, GraphLayout layout, GraphLayout keysAndValues) {
+		final GraphLayout container = layout.subtract(keysAndValues);
+		System.out.println(
+				String.format("  %-16s %5d bytes in %3d objects", label, container.totalSize(), container.totalCount()));
+	}
+
+	private static Map<String, Object> claims(int count) {
+		final Map<String, Object> claims = new LinkedHashMap<>();
+		claims.put("jti", "d3a0e2b4-8c0b-4f0e-9f11-3a1c5a5e2f6b");
+		claims.put("exp", Instant.now().getEpochSecond() + 300);
+		claims.put("iat", Instant.now().getEpochSecond());
+		claims.put("iss", "https://localhost:8443/auth/realms/master");
+		claims.put("sub", "4c3b7d7e-7a3b-4a5e-93b2-6a1c0f6b2e3a");
+		for (int i = claims.size(); i < count; ++i) {
+			claims.put("claim_" + i, i % 2 == 0 ? List.of("value_" + i) : "value_" + i);
+		}
+		return claims;
+	}
+}
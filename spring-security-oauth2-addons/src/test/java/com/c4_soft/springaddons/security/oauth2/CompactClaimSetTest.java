@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CompactClaimSetTest {
+
+	@Test
+	public void behavesLikeMapCopy() {
+		for (final int size : new int[] { 0, 1, 2, 3, 7, 12, 13, 30, 200 }) {
+			final Map<String, Object> expected = new HashMap<>();
+			for (int i = 0; i < size; ++i) {
+				expected.put("claim_" + i, i % 3 == 0 ? null : Integer.valueOf(i));
+			}
+
+			final CompactClaimSet actual = new CompactClaimSet(expected);
+
+			assertThat(actual).isEqualTo(expected);
+			assertThat(actual.hashCode()).isEqualTo(expected.hashCode());
+			assertThat(actual.size()).isEqualTo(size);
+			for (final String key : expected.keySet()) {
+				assertThat(actual.containsKey(key)).isTrue();
+				assertThat(actual.get(key)).isEqualTo(expected.get(key));
+			}
+			assertThat(actual.containsKey("missing")).isFalse();
+			assertThat(actual.get("missing")).isNull();
+			assertThat(actual.get(42)).isNull();
+		}
+	}
+
+	@Test
+	public void collidingKeysAreAllRetrievable() {
+		// "Aa" and "BB" have the same hashCode
+		final CompactClaimSet actual = new CompactClaimSet(Map.of("Aa", 1, "BB", 2, "AaBB", 3, "BBAa", 4));
+
+		assertThat(actual.get("Aa")).isEqualTo(1);
+		assertThat(actual.get("BB")).isEqualTo(2);
+		assertThat(actual.get("AaBB")).isEqualTo(3);
+		assertThat(actual.get("BBAa")).isEqualTo(4);
+	}
+
+	@Test
+	public void ofDoesNotCopyCompactClaimSets() {
+		final CompactClaimSet claims = new CompactClaimSet(Map.of("sub", "ch4mpy"));
+
+		assertThat(CompactClaimSet.of(claims)).isSameAs(claims);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void putIsNotSupported() {
+		new CompactClaimSet(Map.of("sub", "ch4mpy")).put("sub", "machin");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void removeIsNotSupported() {
+		new CompactClaimSet(Map.of("sub", "ch4mpy")).remove("sub");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void entrySetRemovalIsNotSupported() {
+		new CompactClaimSet(Map.of("sub", "ch4mpy")).keySet().clear();
+	}
+
+}
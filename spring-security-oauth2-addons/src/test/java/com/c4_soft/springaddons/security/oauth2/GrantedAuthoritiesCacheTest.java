@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import net.minidev.json.JSONArray;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class GrantedAuthoritiesCacheTest {
+
+	private final GrantedAuthoritiesCache cache = new GrantedAuthoritiesCache("ROLE_", 2, 2);
+
+	@Test
+	public void authoritiesAreShared() {
+		assertThat(cache.authority("USER")).isEqualTo(new SimpleGrantedAuthority("ROLE_USER"))
+				.isSameAs(cache.authority("USER"));
+	}
+
+	@Test
+	public void authoritiesSetsAreSharedBetweenEqualRolesLists() {
+		final JSONArray roles = new JSONArray();
+		roles.add("USER");
+		roles.add("AUTHORIZED_PERSONNEL");
+
+		final Set<GrantedAuthority> actual = cache.authorities(roles);
+
+		assertThat(actual).containsExactlyInAnyOrder(
+				new SimpleGrantedAuthority("ROLE_USER"),
+				new SimpleGrantedAuthority("ROLE_AUTHORIZED_PERSONNEL"));
+		assertThat(cache.authorities(List.of("USER", "AUTHORIZED_PERSONNEL"))).isSameAs(actual);
+
+		roles.add("ADMIN");
+		assertThat(cache.authorities(List.of("USER", "AUTHORIZED_PERSONNEL"))).isSameAs(actual);
+		assertThat(cache.authorities(roles)).hasSize(3);
+	}
+
+	@Test
+	public void cachesAreBounded() {
+		cache.authorities(List.of("A", "B"));
+		final Set<GrantedAuthority> c = cache.authorities(List.of("C"));
+
+		assertThat(cache.authority("C")).isNotSameAs(cache.authority("C"));
+		final Set<GrantedAuthority> d = cache.authorities(List.of("D"));
+		assertThat(cache.authorities(List.of("D"))).isEqualTo(d).isNotSameAs(d);
+		// full: cached sets are kept
+		assertThat(cache.authorities(List.of("C"))).isSameAs(c);
+		assertThat(cache.authorities(null)).isEmpty();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.junit.Test;
+
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcId;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class JwtPayloadClaimSetTest {
+
+	private static final String PAYLOAD = "{\n"
+			+ "  \"exp\": 1588000300, \"iat\" : 1588000000,\n"
+			+ "  \"iss\":\"https:\\/\\/localhost:8443\\/auth\\/realms\\/master\",\n"
+			+ "  \"sub\": \"42\",\n"
+			+ "  \"preferred_username\": \"ch4mpy\",\n"
+			+ "  \"name\": \"J\\u00e9r\\u00f4me \\\"ch4mp\\\" Wacongne\",\n"
+			+ "  \"locale\": \"fr-FR\",\n"
+			+ "  \"nickname\": \"Jérôme\",\n"
+			+ "  \"email_verified\": true,\n"
+			+ "  \"phone_number_verified\": false,\n"
+			+ "  \"middle_name\": null,\n"
+			+ "  \"score\": -12.5e2,\n"
+			+ "  \"realm_access\": { \"roles\": [ \"offline_access\", \"AUTHORIZED_PERSONNEL\", \"]}\\\"\" ] },\n"
+			+ "  \"resource_access\": { \"account\": { \"roles\": [\"manage-account\", \"view-profile\"] } },\n"
+			+ "  \"aud\": [\"first\", \"second\"]\n"
+			+ "}";
+
+	private final JwtPayloadClaimSet claims = new JwtPayloadClaimSet(PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+	@Test
+	public void claimsAreTheSameAsWithFullParsing() throws Exception {
+		final JSONObject expected = (JSONObject) new JSONParser(
+				JSONParser.USE_HI_PRECISION_FLOAT | JSONParser.ACCEPT_TAILLING_SPACE).parse(PAYLOAD);
+
+		assertThat(claims).isEqualTo(expected);
+		assertThat(claims.size()).isEqualTo(expected.size());
+		assertThat(claims.get("realm_access")).isInstanceOf(JSONObject.class);
+		assertThat(claims.get("aud")).isInstanceOf(JSONArray.class);
+		assertThat(claims.get("exp")).isEqualTo(1588000300L);
+		assertThat(claims.get("name")).isEqualTo("Jérôme \"ch4mp\" Wacongne");
+		assertThat(claims.get("nickname")).isEqualTo("Jérôme");
+		assertThat(claims.containsKey("middle_name")).isTrue();
+		assertThat(claims.get("middle_name")).isNull();
+		assertThat(claims.containsKey("missing")).isFalse();
+	}
+
+	@Test
+	public void valuesAreParsedOnce() {
+		assertThat(claims.get("realm_access")).isSameAs(claims.get("realm_access"));
+		assertThat(claims.get("sub")).isSameAs(claims.get("sub"));
+	}
+
+	@Test
+	public void claimSetAccessorsWork() {
+		assertThat(claims.getAsInstant("exp")).isEqualTo(Instant.ofEpochSecond(1588000300L));
+		assertThat(claims.getAsBoolean("email_verified")).isTrue();
+		assertThat(claims.getAsStringSet("aud")).containsExactlyInAnyOrder("first", "second");
+	}
+
+	@Test
+	public void fromTokenValueDecodesPayload() {
+		final String tokenValue = String.format(
+				"%s.%s.signature",
+				base64url("{\"alg\":\"none\"}"),
+				base64url(PAYLOAD));
+
+		final OidcId actual = OidcId.fromTokenValue(tokenValue);
+
+		assertThat(actual.getSubject()).isEqualTo("42");
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+		assertThat(actual.getIssuer().toString()).isEqualTo("https://localhost:8443/auth/realms/master");
+		assertThat(actual.getAudience()).containsExactly("first", "second");
+	}
+
+	@Test
+	public void emptyPayloadIsAccepted() {
+		assertThat(new JwtPayloadClaimSet(" { } ".getBytes(StandardCharsets.UTF_8))).isEmpty();
+	}
+
+	@Test
+	public void malformedPayloadsAreRejected() {
+		for (final String malformed : new String[] {
+				"",
+				"[]",
+				"{",
+				"{\"sub\"}",
+				"{\"sub\":}",
+				"{\"sub\":\"42\"",
+				"{\"sub\":\"42}",
+				"{\"sub\":\"42\"} trailing",
+				"{\"sub\":\"\\x\"}" }) {
+			assertThatThrownBy(() -> new JwtPayloadClaimSet(malformed.getBytes(StandardCharsets.UTF_8)).get("sub"))
+					.as(malformed)
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	@Test
+	public void malformedPayloadMessagesDoNotLeakTokenContent() {
+		final byte[] payload = "{\"email\":\"ch4mp@c4-soft.com\" trailing}".getBytes(StandardCharsets.UTF_8);
+
+		assertThatThrownBy(() -> new JwtPayloadClaimSet(payload).get("email")).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Malformed JWT payload at offset 29: expected '}'")
+				.hasMessageNotContaining("ch4mp")
+				.hasMessageNotContaining("trailing");
+	}
+
+	@Test
+	public void malformedNestedValuesDoNotLeakTokenContentInCauses() {
+		final byte[] payload = "{\"emails\":[\"a\" secret@pii.com]}".getBytes(StandardCharsets.UTF_8);
+
+		final Throwable thrown = catchThrowable(() -> new JwtPayloadClaimSet(payload).get("emails"));
+
+		assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+		for (Throwable t = thrown; t != null; t = t.getCause()) {
+			assertThat(t.getMessage()).doesNotContain("secret").doesNotContain("pii");
+		}
+	}
+
+	private static String base64url(String json) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class NameBitSetTest {
+
+	// 200 names: spans 4 words
+	private final NameVocabulary vocabulary = new NameVocabulary(
+			IntStream.range(0, 200).mapToObj(i -> "scope-" + i).collect(Collectors.toList()));
+
+	@Test
+	public void encodedSetsBehaveAsPlainSets() {
+		final NameBitSet actual = vocabulary.encode("scope-0", "scope-63", "scope-64", "scope-199", "unknown", "scope-0");
+
+		assertThat(actual).hasSize(5);
+		assertThat(actual).containsExactly("scope-0", "scope-63", "scope-64", "scope-199", "unknown");
+		final Set<String> expected = Set.of("scope-0", "scope-63", "scope-64", "scope-199", "unknown");
+		assertThat(actual).isEqualTo(expected);
+		assertThat(actual.hashCode()).isEqualTo(expected.hashCode());
+		assertThat(actual.contains("scope-1")).isFalse();
+		assertThat(actual.contains("other")).isFalse();
+		assertThat(vocabulary.empty()).isEmpty();
+	}
+
+	@Test
+	public void bitwiseChecks() {
+		final NameBitSet actual = vocabulary.encode("scope-1", "scope-130", "unknown");
+
+		assertThat(actual.containsAll(vocabulary.encode("scope-1", "scope-130"))).isTrue();
+		assertThat(actual.containsAll(vocabulary.encode("scope-1", "unknown"))).isTrue();
+		assertThat(actual.containsAll(vocabulary.encode("scope-1", "scope-2"))).isFalse();
+		assertThat(actual.containsAll(vocabulary.encode("scope-1", "other"))).isFalse();
+		assertThat(actual.containsAny(vocabulary.encode("scope-2", "scope-130"))).isTrue();
+		assertThat(actual.containsAny(vocabulary.encode("scope-2", "unknown"))).isTrue();
+		assertThat(actual.containsAny(vocabulary.encode("scope-2", "other"))).isFalse();
+		assertThat(actual.containsAny("scope-3", "scope-1")).isTrue();
+		assertThat(actual.containsAll("scope-3", "scope-1")).isFalse();
+	}
+
+	@Test
+	public void setsFromDifferentVocabulariesAreComparedByNames() {
+		final NameBitSet actual = vocabulary.encode("scope-1", "scope-130");
+		final NameBitSet other = NameVocabulary.of("scope-130", "scope-1").encode("scope-1", "scope-130");
+
+		assertThat(actual).isEqualTo(other);
+		assertThat(actual.containsAll(other)).isTrue();
+		assertThat(actual.containsAny(other)).isTrue();
+	}
+
+	@Test
+	public void scopesAndAuthoritiesCanBeEncoded() {
+		final UnmodifiableClaimSet claims = new UnmodifiableClaimSet(Map.of("scope", "scope-1 scope-2 custom"));
+
+		assertThat(claims.getScopes(vocabulary)).containsExactlyInAnyOrder("scope-1", "scope-2", "custom")
+				.isSameAs(claims.getScopes(vocabulary));
+		assertThat(vocabulary.encodeAuthorities(List.of(new SimpleGrantedAuthority("scope-3"))))
+				.containsExactly("scope-3");
+	}
+}
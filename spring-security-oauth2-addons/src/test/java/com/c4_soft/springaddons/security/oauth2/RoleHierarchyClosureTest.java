@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class RoleHierarchyClosureTest {
+
+	private static final String HIERARCHY = "ROLE_ADMIN > ROLE_MANAGER > ROLE_USER\n"
+			+ "ROLE_AUDITOR > ROLE_USER\n"
+			+ "ROLE_MANAGER > ROLE_REPORTER\n"
+			+ "ROLE_USER > ROLE_GUEST";
+
+	private final RoleHierarchyClosure closure = RoleHierarchyClosure.parse(HIERARCHY);
+
+	@Test
+	public void closureIsTransitive() {
+		assertThat(closure.reachableFrom("ROLE_ADMIN")).containsExactlyInAnyOrder(
+				"ROLE_ADMIN",
+				"ROLE_MANAGER",
+				"ROLE_USER",
+				"ROLE_REPORTER",
+				"ROLE_GUEST");
+		assertThat(closure.reachableFrom("ROLE_AUDITOR"))
+				.containsExactlyInAnyOrder("ROLE_AUDITOR", "ROLE_USER", "ROLE_GUEST");
+		assertThat(closure.reachableFrom("ROLE_GUEST")).containsExactly("ROLE_GUEST");
+		assertThat(closure.reachableFrom("ROLE_OTHER")).containsExactly("ROLE_OTHER");
+	}
+
+	@Test
+	public void expansionIsTheSameAsSpringRoleHierarchy() {
+		final RoleHierarchyImpl spring = new RoleHierarchyImpl();
+		spring.setHierarchy(HIERARCHY);
+		final GrantedAuthoritiesCache cache =
+				new GrantedAuthoritiesCache("ROLE_", UnaryOperator.identity(), closure, 16, 16);
+
+		for (final List<String> roles : List.of(
+				List.of("ADMIN"),
+				List.of("AUDITOR", "REPORTER"),
+				List.of("GUEST", "OTHER"),
+				List.<String>of())) {
+			final Set<String> expected = spring
+					.getReachableGrantedAuthorities(
+							AuthorityUtils.createAuthorityList(
+									roles.stream().map(role -> "ROLE_" + role).toArray(String[]::new)))
+					.stream()
+					.map(GrantedAuthority::getAuthority)
+					.collect(Collectors.toSet());
+
+			assertThat(cache.authorities(roles)).extracting(GrantedAuthority::getAuthority)
+					.as(roles.toString())
+					.containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	@Test
+	public void expandedAuthoritiesAreShared() {
+		final GrantedAuthoritiesCache cache =
+				new GrantedAuthoritiesCache("ROLE_", UnaryOperator.identity(), closure, 16, 16);
+
+		final GrantedAuthority user = cache.authority("USER");
+
+		assertThat(cache.authorities(List.of("ADMIN"))).anySatisfy(authority -> assertThat(authority).isSameAs(user));
+	}
+
+	@Test
+	public void cyclesAreRejected() {
+		assertThatThrownBy(() -> RoleHierarchyClosure.parse("ROLE_A > ROLE_B\nROLE_B > ROLE_C > ROLE_A"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> RoleHierarchyClosure.of(Map.of("ROLE_A", List.of("ROLE_A"))))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void malformedHierarchiesAreRejected() {
+		assertThatThrownBy(() -> RoleHierarchyClosure.parse("ROLE_A")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> RoleHierarchyClosure.parse("ROLE_A > ")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class UnmodifiableClaimSetTest {
+
+	private final UnmodifiableClaimSet claims = new UnmodifiableClaimSet(
+			Map.of(
+					"exp",
+					1588000000L,
+					"auth_time",
+					"2020-04-27T15:06:40Z",
+					"scope",
+					"openid showcase",
+					"aud",
+					List.of("a b", "c"),
+					"iss",
+					"https://localhost:8443/auth/realms/master",
+					"email_verified",
+					"true"));
+
+	@Test
+	public void typedClaimsAreParsedOnce() throws URISyntaxException {
+		assertThat(claims.getAsInstant("exp")).isSameAs(claims.getAsInstant("exp"));
+		assertThat(claims.getAsInstant("auth_time")).isSameAs(claims.getAsInstant("auth_time"));
+		assertThat(claims.getAsStringSet("scope")).isSameAs(claims.getAsStringSet("scope"));
+		assertThat(claims.getAsUri("iss")).isSameAs(claims.getAsUri("iss"));
+	}
+
+	@Test
+	public void typedClaimsAreParsedAsWithDefaultMethods() throws URISyntaxException {
+		final ClaimSet reference = new ModifiableClaimSet(claims);
+
+		assertThat(claims.getAsInstant("exp")).isEqualTo(reference.getAsInstant("exp"));
+		assertThat(claims.getAsInstant("auth_time")).isEqualTo(reference.getAsInstant("auth_time"));
+		assertThat(claims.getAsStringSet("scope")).isEqualTo(reference.getAsStringSet("scope"));
+		assertThat(claims.getAsStringSet("aud")).containsExactlyInAnyOrder("a", "b", "c");
+		assertThat(claims.getAsUri("iss")).isEqualTo(reference.getAsUri("iss"));
+		assertThat(claims.getAsBoolean("email_verified")).isTrue();
+	}
+
+	@Test
+	public void epochSecondsAreReadFromAnyDateRepresentation() {
+		final UnmodifiableClaimSet dates = new UnmodifiableClaimSet(
+				Map.of("exp", 1588000300, "iat", Instant.ofEpochSecond(1588000000L), "nbf", new Date(1588000000999L)));
+
+		assertThat(dates.getAsEpochSecond("exp")).isEqualTo(1588000300L);
+		assertThat(dates.getAsEpochSecond("iat")).isEqualTo(1588000000L);
+		assertThat(dates.getAsEpochSecond("nbf")).isEqualTo(1588000000L);
+		assertThat(claims.getAsEpochSecond("auth_time")).isEqualTo(1588000000L);
+		assertThat(claims.getAsEpochSecond("updated_at")).isEqualTo(ClaimSet.MISSING_EPOCH_SECOND);
+		assertThat(dates.getAsInstant("exp")).isEqualTo(Instant.ofEpochSecond(1588000300L));
+	}
+
+	@Test
+	public void expiryIsCheckedAgainstExpWithSkew() {
+		assertThat(claims.isExpired(1587999999L, 0)).isFalse();
+		assertThat(claims.isExpired(1588000000L, 0)).isTrue();
+		assertThat(claims.isExpired(1588000030L, 60)).isFalse();
+		assertThat(new UnmodifiableClaimSet(Map.of()).isExpired(Long.MAX_VALUE, 0)).isFalse();
+	}
+
+	@Test
+	public void missingClaimsAreParsedToNull() throws URISyntaxException {
+		assertThat(claims.getAsInstant("iat")).isNull();
+		assertThat(claims.getAsInstant("iat")).isNull();
+		assertThat(claims.getAsStringSet("scp")).isNull();
+		assertThat(claims.getAsUri("website")).isNull();
+		assertThat(claims.getAsBoolean("phone_number_verified")).isNull();
+	}
+
+	@Test
+	public void scopesAreTokenizedOnce() {
+		assertThat(claims.getScopes()).containsExactlyInAnyOrder("openid", "showcase").isSameAs(claims.getScopes());
+		assertThat(new UnmodifiableClaimSet(Map.of("scp", List.of("a  b", "c", "a"))).getScopes())
+				.containsExactlyInAnyOrder("a", "b", "c");
+		assertThat(new UnmodifiableClaimSet(Map.of()).getScopes()).isEmpty();
+	}
+
+	@Test
+	public void hasScopeMatchesWholeTokensOnly() {
+		final ClaimSet scp = new ModifiableClaimSet(Map.of("scp", List.of("message:read showcase-admin", "openid")));
+
+		assertThat(claims.hasScope("showcase")).isTrue();
+		assertThat(claims.hasScope("openid")).isTrue();
+		assertThat(claims.hasScope("show")).isFalse();
+		assertThat(claims.hasScope("case")).isFalse();
+		assertThat(claims.hasScope("")).isFalse();
+		assertThat(claims.hasAnyScope("message:read", "showcase")).isTrue();
+		assertThat(claims.hasAnyScope("message:read")).isFalse();
+		assertThat(scp.hasScope("showcase")).isFalse();
+		assertThat(scp.hasScope("showcase-admin")).isTrue();
+		assertThat(scp.hasScope("openid")).isTrue();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void scopesAreImmutable() {
+		claims.getScopes().add("machin");
+	}
+
+	@Test
+	public void equalityIsMapOne() {
+		final Map<String, Object> reference = new HashMap<>(claims);
+		final UnmodifiableClaimSet same = new UnmodifiableClaimSet(reference);
+		reference.put("sub", "42");
+		final UnmodifiableClaimSet other = new UnmodifiableClaimSet(reference);
+
+		assertThat(claims).isEqualTo(same);
+		assertThat(claims.hashCode()).isEqualTo(same.hashCode()).isEqualTo(Map.copyOf(claims).hashCode());
+		assertThat(claims).isEqualTo(Map.copyOf(claims));
+		assertThat(claims).isNotEqualTo(other);
+		assertThat(claims).isNotEqualTo(reference);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void memoizedSetsAreUnmodifiable() {
+		claims.getAsStringSet("scope").add("machin");
+	}
+
+}
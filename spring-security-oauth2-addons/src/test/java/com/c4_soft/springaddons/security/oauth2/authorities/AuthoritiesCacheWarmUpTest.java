@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.c4_soft.springaddons.security.oauth2.authorities.AuthoritiesCacheWarmUp.Result;
+import com.c4_soft.springaddons.security.oauth2.authorities.AuthoritiesCacheWarmUp.StopReason;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class AuthoritiesCacheWarmUpTest {
+
+	private static final int SUBJECTS = 25;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+		loads.incrementAndGet();
+		return List.of("LOADED");
+	}).maxSize(100).refreshExecutor(Runnable::run).build();
+
+	private final AuthoritiesPageLoader pageLoader = (page, pageSize) -> {
+		final Map<String, Collection<String>> authorities = new LinkedHashMap<>();
+		for (int i = page * pageSize; i < Math.min(SUBJECTS, (page + 1) * pageSize); ++i) {
+			authorities.put("user-" + i, List.of("PRELOADED"));
+		}
+		return authorities;
+	};
+
+	@Test
+	public void allPagesArePreloaded() {
+		final Result actual = new AuthoritiesCacheWarmUp(provider, pageLoader, 10, 1000, Duration.ofMinutes(1)).warmUp();
+
+		assertThat(actual.getStopReason()).isEqualTo(StopReason.COMPLETED);
+		assertThat(actual.getPreloadedSubjects()).isEqualTo(SUBJECTS);
+		assertThat(actual.getPages()).isEqualTo(4);
+		assertThat(provider.getAuthorities("user-24")).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("PRELOADED");
+		assertThat(loads).hasValue(0);
+	}
+
+	@Test
+	public void warmUpStopsAtSizeBudget() {
+		final Result actual = new AuthoritiesCacheWarmUp(provider, pageLoader, 10, 12, Duration.ofMinutes(1)).warmUp();
+
+		assertThat(actual.getStopReason()).isEqualTo(StopReason.SIZE_BUDGET);
+		assertThat(actual.getPreloadedSubjects()).isEqualTo(12);
+		assertThat(provider.getStats().getSize()).isEqualTo(12);
+	}
+
+	@Test
+	public void warmUpStopsAtTimeBudget() {
+		final AtomicInteger ticks = new AtomicInteger();
+		// each clock reading is one second later than the previous one
+		final Clock clock = new Clock() {
+			@Override
+			public ZoneOffset getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				return this;
+			}
+
+			@Override
+			public Instant instant() {
+				return Instant.ofEpochSecond(ticks.getAndIncrement());
+			}
+		};
+
+		final Result actual =
+				new AuthoritiesCacheWarmUp(provider, pageLoader, 10, 1000, Duration.ofSeconds(2), clock).warmUp();
+
+		assertThat(actual.getStopReason()).isEqualTo(StopReason.TIME_BUDGET);
+		assertThat(actual.getPreloadedSubjects()).isEqualTo(10);
+	}
+
+	@Test
+	public void warmUpStopsWhenCacheIsFull() {
+		final CachingAuthoritiesProvider small =
+				CachingAuthoritiesProvider.builder(subject -> List.of()).maxSize(5).refreshExecutor(Runnable::run).build();
+
+		final Result actual = new AuthoritiesCacheWarmUp(small, pageLoader, 10, 1000, Duration.ofMinutes(1)).warmUp();
+
+		assertThat(actual.getStopReason()).isEqualTo(StopReason.CACHE_FULL);
+		assertThat(small.getStats().getSize()).isEqualTo(5);
+	}
+
+	@Test
+	public void failuresDoNotFailStartup() {
+		final AuthoritiesCacheWarmUp warmUp = new AuthoritiesCacheWarmUp(provider, (page, pageSize) -> {
+			if (page > 0) {
+				throw new IllegalStateException("database down");
+			}
+			return pageLoader.loadPage(page, pageSize);
+		}, 10, 1000, Duration.ofMinutes(1));
+
+		warmUp.start();
+
+		assertThat(warmUp.isRunning()).isTrue();
+		assertThat(warmUp.getResult().getStopReason()).isEqualTo(StopReason.FAILED);
+		assertThat(warmUp.getResult().getPreloadedSubjects()).isEqualTo(10);
+		assertThat(warmUp.getResult().getFailure()).isInstanceOf(IllegalStateException.class)
+				.hasMessage("database down");
+	}
+
+	@Test
+	public void hungPageLoadsDoNotExceedTimeBudget() throws Exception {
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final AuthoritiesCacheWarmUp warmUp = new AuthoritiesCacheWarmUp(provider, (page, pageSize) -> {
+			if (page > 0) {
+				try {
+					Thread.sleep(60_000L);
+				} catch (final InterruptedException e) {
+					interrupted.countDown();
+				}
+			}
+			return pageLoader.loadPage(page, pageSize);
+		}, 10, 1000, Duration.ofMillis(200));
+
+		final long start = System.nanoTime();
+		final Result actual = warmUp.warmUp();
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+		assertThat(actual.getStopReason()).isEqualTo(StopReason.TIME_BUDGET);
+		assertThat(actual.getPreloadedSubjects()).isEqualTo(10);
+		assertThat(actual.getFailure()).isNull();
+		assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.c4_soft.springaddons.security.oauth2.authorities.AuthoritiesChangesPoller.Mode;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class AuthoritiesChangesPollerTest {
+
+	/**
+	 * Authorities table: subject -&gt; authorities and row version
+	 */
+	private final Map<String, List<String>> authorities =
+			new ConcurrentHashMap<>(Map.of("ch4mp", List.of("USER"), "other", List.of("USER")));
+
+	private final Map<String, Long> versions = new ConcurrentHashMap<>(Map.of("ch4mp", 1L, "other", 2L));
+
+	private final AtomicBoolean databaseDown = new AtomicBoolean();
+
+	private final AuthoritiesChangesLoader changesLoader = watermark -> {
+		if (databaseDown.get()) {
+			throw new IllegalStateException("database down");
+		}
+		return versions.entrySet()
+				.stream()
+				.filter(v -> v.getValue() > watermark)
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	};
+
+	private final Queue<Runnable> pendingRefreshes = new ArrayDeque<>();
+
+	private final Map<String, Integer> loads = new HashMap<>();
+
+	private final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+		loads.merge(subject, 1, Integer::sum);
+		return authorities.get(subject);
+	}).refreshExecutor(pendingRefreshes::add).build();
+
+	private void update(String subject, long version, String... newAuthorities) {
+		authorities.put(subject, List.of(newAuthorities));
+		versions.put(subject, version);
+	}
+
+	@Test
+	public void onlyChangedSubjectsAreEvicted() {
+		try (AuthoritiesChangesPoller poller =
+				new AuthoritiesChangesPoller(provider, changesLoader, 2L, Duration.ofSeconds(1), Mode.EVICT)) {
+			provider.getAuthorities("ch4mp");
+			provider.getAuthorities("other");
+			update("ch4mp", 3L, "USER", "ADMIN");
+
+			assertThat(poller.poll()).isEqualTo(1);
+			assertThat(poller.getWatermark()).isEqualTo(3L);
+			assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactlyInAnyOrder("USER", "ADMIN");
+			provider.getAuthorities("other");
+			assertThat(loads).containsEntry("ch4mp", 2).containsEntry("other", 1);
+
+			assertThat(poller.poll()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void changedSubjectsAreRefreshedInBackground() {
+		try (AuthoritiesChangesPoller poller =
+				new AuthoritiesChangesPoller(provider, changesLoader, 2L, Duration.ofSeconds(1), Mode.REFRESH)) {
+			provider.getAuthorities("ch4mp");
+			update("ch4mp", 3L, "ADMIN");
+			update("unknown", 4L, "ADMIN");
+
+			poller.poll();
+			assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("USER");
+			// uncached subjects are not loaded
+			assertThat(pendingRefreshes).hasSize(1);
+
+			pendingRefreshes.poll().run();
+			assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("ADMIN");
+			assertThat(loads).containsEntry("ch4mp", 2).doesNotContainKey("unknown");
+		}
+	}
+
+	@Test
+	public void failedPollsKeepWatermark() {
+		try (AuthoritiesChangesPoller poller =
+				new AuthoritiesChangesPoller(provider, changesLoader, 2L, Duration.ofSeconds(1), Mode.EVICT)) {
+			provider.getAuthorities("ch4mp");
+			update("ch4mp", 3L, "ADMIN");
+			databaseDown.set(true);
+
+			assertThat(poller.poll()).isEqualTo(0);
+			assertThat(poller.getWatermark()).isEqualTo(2L);
+			assertThat(poller.getPollFailureCount()).isEqualTo(1);
+
+			databaseDown.set(false);
+			assertThat(poller.poll()).isEqualTo(1);
+			assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("ADMIN");
+		}
+	}
+
+	@Test
+	public void failedChangesAreRetriedWithoutStoppingScheduledPolls() throws Exception {
+		final AtomicBoolean busDown = new AtomicBoolean(true);
+		final AuthoritiesInvalidationBus bus = new AuthoritiesInvalidationBus() {
+			@Override
+			public void publish(Collection<String> subjects) {
+				if (busDown.get() && subjects.contains("ch4mp")) {
+					throw new IllegalStateException("bus down");
+				}
+			}
+
+			@Override
+			public Subscription subscribe(Consumer<Collection<String>> listener) {
+				return () -> {};
+			}
+		};
+		final CachingAuthoritiesProvider broadcasting =
+				CachingAuthoritiesProvider.builder(authorities::get).invalidationBus(bus).build();
+		try (AuthoritiesChangesPoller poller =
+				new AuthoritiesChangesPoller(broadcasting, changesLoader, 0L, Duration.ofMillis(10), Mode.EVICT)) {
+			assertThat(poller.poll()).isEqualTo(1);
+			assertThat(poller.getChangeFailureCount()).isEqualTo(1);
+			assertThat(poller.getWatermark()).isEqualTo(0L);
+
+			busDown.set(false);
+			assertThat(poller.poll()).isEqualTo(2);
+			assertThat(poller.getWatermark()).isEqualTo(2L);
+
+			busDown.set(true);
+			update("ch4mp", 3L, "ADMIN");
+			poller.start();
+			final long deadline = System.currentTimeMillis() + 5000L;
+			while (poller.getPollCount() < 5 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			assertThat(poller.getPollCount()).isGreaterThanOrEqualTo(5);
+			assertThat(poller.isRunning()).isTrue();
+			assertThat(poller.getChangeFailureCount()).isGreaterThan(2);
+			assertThat(poller.getWatermark()).isEqualTo(2L);
+		} finally {
+			broadcasting.close();
+		}
+	}
+}
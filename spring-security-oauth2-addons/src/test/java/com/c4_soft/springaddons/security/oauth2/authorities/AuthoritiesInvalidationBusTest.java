@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class AuthoritiesInvalidationBusTest {
+
+	private final Map<String, List<String>> database = new ConcurrentHashMap<>(Map.of("ch4mp", List.of("USER")));
+
+	private CachingAuthoritiesProvider node(AuthoritiesInvalidationBus bus) {
+		return CachingAuthoritiesProvider.builder(database::get)
+				.refreshExecutor(Runnable::run)
+				.invalidationBus(bus)
+				.build();
+	}
+
+	@Test
+	public void invalidationsAreBroadcastToAllNodes() {
+		final InMemoryAuthoritiesInvalidationBus bus = new InMemoryAuthoritiesInvalidationBus();
+		try (CachingAuthoritiesProvider first = node(bus); CachingAuthoritiesProvider second = node(bus)) {
+			first.getAuthorities("ch4mp");
+			second.getAuthorities("ch4mp");
+			database.put("ch4mp", List.of("ADMIN"));
+
+			first.invalidate("ch4mp");
+
+			assertThat(second.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("ADMIN");
+			assertThat(first.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("ADMIN");
+		}
+	}
+
+	@Test
+	public void closedProvidersUnsubscribe() {
+		final InMemoryAuthoritiesInvalidationBus bus = new InMemoryAuthoritiesInvalidationBus();
+		final List<Collection<String>> received = new ArrayList<>();
+		bus.subscribe(received::add);
+		node(bus).close();
+
+		bus.publish(List.of("ch4mp"));
+
+		assertThat(received).containsExactly(List.of("ch4mp"));
+	}
+
+	@Test
+	public void jdbcBusDeliversRowsPublishedAfterFirstPoll() throws Exception {
+		final JdbcDataSource dataSource = invalidationTable("authorities-invalidation");
+		try (JdbcPollingAuthoritiesInvalidationBus publisherBus = new JdbcPollingAuthoritiesInvalidationBus(
+				dataSource,
+				"authorities_invalidation",
+				Duration.ofSeconds(1),
+				null);
+				JdbcPollingAuthoritiesInvalidationBus subscriberBus = new JdbcPollingAuthoritiesInvalidationBus(
+						dataSource,
+						"authorities_invalidation",
+						Duration.ofSeconds(1),
+						null);
+				CachingAuthoritiesProvider publisher = node(publisherBus);
+				CachingAuthoritiesProvider subscriber = node(subscriberBus)) {
+			publisherBus.publish(List.of("before-first-poll"));
+			assertThat(subscriberBus.poll()).isEqualTo(0);
+
+			subscriber.getAuthorities("ch4mp");
+			database.put("ch4mp", List.of("ADMIN"));
+			publisher.invalidate("ch4mp");
+			assertThat(subscriber.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("USER");
+
+			assertThat(subscriberBus.poll()).isEqualTo(1);
+			assertThat(subscriber.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+					.containsExactly("ADMIN");
+			assertThat(subscriberBus.poll()).isEqualTo(0);
+		} finally {
+			dropInvalidationTable(dataSource);
+		}
+	}
+
+	@Test
+	public void jdbcBusDeliversToAllListenersWhenOneFails() throws Exception {
+		final JdbcDataSource dataSource = invalidationTable("authorities-invalidation-failing-listener");
+		try (JdbcPollingAuthoritiesInvalidationBus bus = new JdbcPollingAuthoritiesInvalidationBus(
+				dataSource,
+				"authorities_invalidation",
+				Duration.ofSeconds(1),
+				null)) {
+			final List<Collection<String>> received = new ArrayList<>();
+			bus.subscribe(subjects -> {
+				throw new IllegalStateException("listener failure");
+			});
+			bus.subscribe(received::add);
+			bus.poll();
+
+			bus.publish(List.of("ch4mp"));
+
+			assertThat(bus.poll()).isEqualTo(1);
+			assertThat(received).containsExactly(List.of("ch4mp"));
+			assertThat(bus.getListenerFailureCount()).isEqualTo(1);
+			assertThat(bus.getPollFailureCount()).isEqualTo(0);
+		} finally {
+			dropInvalidationTable(dataSource);
+		}
+	}
+
+	private static JdbcDataSource invalidationTable(String databaseName) throws Exception {
+		final JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute(
+					"CREATE TABLE authorities_invalidation (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+							+ "subject VARCHAR(255) NOT NULL, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+		}
+		return dataSource;
+	}
+
+	private static void dropInvalidationTable(JdbcDataSource dataSource) throws Exception {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE authorities_invalidation");
+		}
+	}
+}
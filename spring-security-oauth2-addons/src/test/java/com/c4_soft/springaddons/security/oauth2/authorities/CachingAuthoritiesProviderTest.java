@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CachingAuthoritiesProviderTest {
+
+	private static final Instant NOW = Instant.ofEpochSecond(1588000000L);
+
+	private final MutableClock clock = new MutableClock(NOW);
+
+	private final Map<String, List<String>> database = new ConcurrentHashMap<>(Map.of("ch4mp", List.of("USER")));
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private volatile boolean isDatabaseDown = false;
+
+	private final AuthoritiesLoader loader = subject -> {
+		loads.incrementAndGet();
+		if (isDatabaseDown) {
+			throw new IllegalStateException("database is down");
+		}
+		return database.getOrDefault(subject, List.of());
+	};
+
+	/**
+	 * Runs submitted tasks only when asked to
+	 */
+	private final Queue<Runnable> pendingRefreshes = new ArrayDeque<>();
+
+	private final Executor manualExecutor = pendingRefreshes::add;
+
+	private CachingAuthoritiesProvider provider(int maxSize) {
+		return CachingAuthoritiesProvider.builder(loader)
+				.maxSize(maxSize)
+				.refreshAfter(Duration.ofMinutes(5))
+				.timeToLive(Duration.ofMinutes(10))
+				.refreshExecutor(manualExecutor)
+				.clock(clock)
+				.build();
+	}
+
+	@Test
+	public void authoritiesAreLoadedOnceBeforeRefreshDelay() {
+		final CachingAuthoritiesProvider provider = provider(10);
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		clock.instant = NOW.plusSeconds(299);
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+
+		assertThat(loads).hasValue(1);
+		assertThat(pendingRefreshes).isEmpty();
+		assertThat(provider.getStats().getHits()).isEqualTo(1);
+		assertThat(provider.getStats().getMisses()).isEqualTo(1);
+	}
+
+	@Test
+	public void staleAuthoritiesAreServedWhileRefreshedInBackground() {
+		final CachingAuthoritiesProvider provider = provider(10);
+		provider.getAuthorities("ch4mp");
+		database.put("ch4mp", List.of("USER", "ADMIN"));
+
+		clock.instant = NOW.plusSeconds(300);
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		provider.getAuthorities("ch4mp");
+		assertThat(pendingRefreshes).hasSize(1);
+
+		pendingRefreshes.poll().run();
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+				.containsExactlyInAnyOrder("USER", "ADMIN");
+		assertThat(loads).hasValue(2);
+		assertThat(provider.getStats().getRefreshes()).isEqualTo(1);
+	}
+
+	@Test
+	public void failedRefreshKeepsCurrentValueAndIsRetried() {
+		final AtomicInteger calls = new AtomicInteger();
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+			if (calls.incrementAndGet() > 1) {
+				throw new IllegalStateException("database down");
+			}
+			return List.of("USER");
+		}).refreshExecutor(manualExecutor).clock(clock).build();
+		provider.getAuthorities("ch4mp");
+		clock.instant = NOW.plus(Duration.ofMinutes(6));
+		provider.getAuthorities("ch4mp");
+
+		pendingRefreshes.poll().run();
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(pendingRefreshes).hasSize(1);
+		assertThat(provider.getStats().getRefreshFailures()).isEqualTo(1);
+	}
+
+	@Test
+	public void expiredEntriesAreNotServed() {
+		final CachingAuthoritiesProvider provider = provider(10);
+		provider.getAuthorities("ch4mp");
+		database.put("ch4mp", List.of("ADMIN"));
+
+		clock.instant = NOW.plus(Duration.ofMinutes(10));
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("ADMIN");
+		assertThat(pendingRefreshes).isEmpty();
+	}
+
+	@Test
+	public void emptyResultsAreCachedForNegativeTimeToLive() {
+		final CachingAuthoritiesProvider provider = provider(10);
+
+		assertThat(provider.getAuthorities("nobody")).isEmpty();
+		clock.instant = NOW.plusSeconds(59);
+		assertThat(provider.getAuthorities("nobody")).isEmpty();
+		assertThat(loads).hasValue(1);
+		assertThat(pendingRefreshes).isEmpty();
+		assertThat(provider.getStats().getNegativeHits()).isEqualTo(1);
+
+		database.put("nobody", List.of("USER"));
+		clock.instant = NOW.plusSeconds(60);
+		assertThat(provider.getAuthorities("nobody")).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("USER");
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	public void negativeCachingCanBeDisabled() {
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(loader)
+				.negativeTimeToLive(Duration.ZERO)
+				.refreshExecutor(manualExecutor)
+				.clock(clock)
+				.build();
+
+		provider.getAuthorities("nobody");
+		provider.getAuthorities("nobody");
+
+		assertThat(loads).hasValue(2);
+		assertThat(provider.getStats().getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void invalidatedEntriesAreReloaded() {
+		final CachingAuthoritiesProvider provider = provider(10);
+		provider.getAuthorities("ch4mp");
+		database.put("ch4mp", List.of("ADMIN"));
+
+		provider.invalidate("ch4mp");
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("ADMIN");
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	public void sizeIsBounded() {
+		final CachingAuthoritiesProvider provider = provider(10);
+
+		for (int i = 0; i < 100; ++i) {
+			provider.getAuthorities("user-" + i);
+		}
+
+		assertThat(provider.getStats().getSize()).isLessThanOrEqualTo(10);
+		assertThat(provider.getStats().getEvictions()).isGreaterThan(0);
+	}
+
+	@Test
+	public void authoritiesSetsAreSharedBetweenUsers() {
+		database.put("other", List.of("USER"));
+		final CachingAuthoritiesProvider provider = provider(10);
+
+		assertThat(provider.getAuthorities("other")).isSameAs(provider.getAuthorities("ch4mp"));
+	}
+
+	@Test
+	public void concurrentMissesShareASingleLoad() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+			loads.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("USER");
+		}).refreshExecutor(manualExecutor).clock(clock).build();
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<Set<GrantedAuthority>>> results = new ArrayList<>();
+			for (int i = 0; i < 8; ++i) {
+				results.add(executor.submit(() -> provider.getAuthorities("ch4mp")));
+			}
+			Thread.sleep(100);
+			release.countDown();
+
+			for (final Future<Set<GrantedAuthority>> result : results) {
+				assertThat(result.get(5, TimeUnit.SECONDS)).extracting(GrantedAuthority::getAuthority)
+						.containsExactly("USER");
+			}
+			assertThat(loads).hasValue(1);
+			assertThat(provider.getStats().getMisses() + provider.getStats().getCoalesced()
+					+ provider.getStats().getHits()).isEqualTo(8);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void defaultRefreshExecutorRefreshesConcurrently() throws Exception {
+		final CountDownLatch bothRefreshing = new CountDownLatch(2);
+		try (final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+			bothRefreshing.countDown();
+			try {
+				bothRefreshing.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("USER");
+		}).clock(clock).build()) {
+			provider.preload("ch4mp", List.of("USER"));
+			provider.preload("other", List.of("USER"));
+			clock.instant = NOW.plus(Duration.ofMinutes(6));
+
+			provider.getAuthorities("ch4mp");
+			provider.getAuthorities("other");
+
+			assertThat(bothRefreshing.await(2, TimeUnit.SECONDS)).isTrue();
+		}
+	}
+
+	@Test
+	public void asyncMissesShareASingleLoad() {
+		final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+		final CachingAuthoritiesProvider provider = provider(10);
+
+		final CompletableFuture<Set<GrantedAuthority>> first = provider.getAuthoritiesAsync("ch4mp", pendingLoads::add);
+		final CompletableFuture<Set<GrantedAuthority>> second = provider.getAuthoritiesAsync("ch4mp", pendingLoads::add);
+		second.cancel(true);
+		assertThat(pendingLoads).hasSize(1);
+		assertThat(first).isNotDone();
+
+		pendingLoads.poll().run();
+
+		assertThat(first.join()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(provider.getAuthoritiesAsync("ch4mp", pendingLoads::add)).isDone();
+		assertThat(loads).hasValue(1);
+		assertThat(provider.getStats().getCoalesced()).isEqualTo(1);
+	}
+
+	@Test
+	public void loadsInFlightWhenInvalidatedAreNotCached() {
+		final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+		final CachingAuthoritiesProvider provider = provider(10);
+		final CompletableFuture<Set<GrantedAuthority>> pending = provider.getAuthoritiesAsync("ch4mp", pendingLoads::add);
+
+		provider.invalidate("ch4mp");
+		pendingLoads.poll().run();
+
+		assertThat(pending.join()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(provider.getStats().getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void failingLoadsServeLastKnownAuthorities() {
+		final CachingAuthoritiesProvider provider = provider(10);
+		provider.getAuthorities("ch4mp");
+		clock.instant = NOW.plus(Duration.ofMinutes(11));
+		isDatabaseDown = true;
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(loads).hasValue(2);
+		assertThat(provider.getStats().getStaleServed()).isEqualTo(1);
+	}
+
+	@Test
+	public void slowLoadsServeLastKnownAuthorities() {
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(loader)
+				.lookupTimeout(Duration.ofMillis(50))
+				.lookupExecutor(manualExecutor)
+				.clock(clock)
+				.build();
+		provider.preload("ch4mp", List.of("USER"));
+		clock.instant = NOW.plus(Duration.ofMinutes(11));
+
+		// load stays queued in manual executor: lookup times out
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(provider.getStats().getTimeouts()).isEqualTo(1);
+		assertThat(provider.getStats().getStaleServed()).isEqualTo(1);
+
+		database.put("ch4mp", List.of("ADMIN"));
+		pendingRefreshes.poll().run();
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("ADMIN");
+	}
+
+	@Test
+	public void slowLoadIsASingleFailureWhateverTheNumberOfWaitingCallers() throws Exception {
+		final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(loader)
+				.lookupTimeout(Duration.ofMillis(20))
+				.circuitBreaker(2, Duration.ofSeconds(30))
+				.refreshExecutor(manualExecutor)
+				.clock(clock)
+				.build();
+
+		final CompletableFuture<Set<GrantedAuthority>> first = provider.getAuthoritiesAsync("ch4mp", pendingLoads::add);
+		final CompletableFuture<Set<GrantedAuthority>> second = provider.getAuthoritiesAsync("ch4mp", pendingLoads::add);
+		Thread.sleep(200);
+
+		assertThat(provider.getStats().getTimeouts()).isEqualTo(1);
+		assertThat(provider.getStats().isCircuitOpen()).isFalse();
+
+		// no stale value: callers keep waiting for the slow load
+		pendingLoads.poll().run();
+		assertThat(first.join()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(second.join()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+	}
+
+	@Test
+	public void circuitOpensAfterConsecutiveFailuresAndHalfOpensAfterDelay() {
+		final CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(loader)
+				.circuitBreaker(2, Duration.ofSeconds(30))
+				.refreshExecutor(manualExecutor)
+				.clock(clock)
+				.build();
+		isDatabaseDown = true;
+
+		for (int i = 0; i < 3; ++i) {
+			try {
+				provider.getAuthorities("ch4mp");
+				fail("no stale authorities to fall back to");
+			} catch (final IllegalStateException e) {
+				// expected
+			}
+		}
+		assertThat(loads).hasValue(2);
+		assertThat(provider.getStats().getShortCircuited()).isEqualTo(1);
+		assertThat(provider.getStats().isCircuitOpen()).isTrue();
+
+		clock.instant = NOW.plusSeconds(31);
+		isDatabaseDown = false;
+
+		assertThat(provider.getAuthorities("ch4mp")).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+		assertThat(loads).hasValue(3);
+		assertThat(provider.getStats().isCircuitOpen()).isFalse();
+	}
+
+	private static final class MutableClock extends Clock {
+		private volatile Instant instant;
+
+		MutableClock(Instant instant) {
+			this.instant = instant;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneId.of("UTC");
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class CircuitBreakerTest {
+
+	private final CircuitBreaker breaker = new CircuitBreaker(2, 1000L);
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		breaker.tryAcquire(0L).onFailure(0L);
+		breaker.tryAcquire(0L).onSuccess();
+		breaker.tryAcquire(0L).onFailure(0L);
+		assertThat(breaker.getState(0L)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+		breaker.tryAcquire(0L).onFailure(10L);
+
+		assertThat(breaker.getState(10L)).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.tryAcquire(1009L)).isNull();
+		assertThat(breaker.getState(1010L)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+	}
+
+	@Test
+	public void onlyFirstOutcomeOfAPermitCounts() {
+		final CircuitBreaker.Permit permit = breaker.tryAcquire(0L);
+		permit.onFailure(0L);
+		permit.onFailure(0L);
+
+		assertThat(breaker.getState(0L)).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	public void lateOutcomesOfPermitsAcquiredBeforeOpeningAreIgnored() {
+		final CircuitBreaker.Permit late = breaker.tryAcquire(0L);
+		final CircuitBreaker.Permit lateToo = breaker.tryAcquire(0L);
+		open(0L);
+
+		late.onFailure(500L);
+		assertThat(breaker.tryAcquire(1000L)).isNotNull();
+
+		lateToo.onSuccess();
+		assertThat(breaker.getState(1000L)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+	}
+
+	@Test
+	public void halfOpenAllowsASingleTrial() {
+		open(0L);
+
+		final CircuitBreaker.Permit trial = breaker.tryAcquire(1000L);
+		assertThat(trial).isNotNull();
+		assertThat(breaker.tryAcquire(1000L)).isNull();
+
+		trial.onSuccess();
+		assertThat(breaker.getState(1000L)).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(breaker.tryAcquire(1000L)).isNotNull();
+	}
+
+	@Test
+	public void failedTrialOpensAgain() {
+		open(0L);
+
+		breaker.tryAcquire(1000L).onFailure(1100L);
+
+		assertThat(breaker.tryAcquire(2099L)).isNull();
+		assertThat(breaker.tryAcquire(2100L)).isNotNull();
+	}
+
+	@Test
+	public void trialWithoutOutcomeIsAbandoned() {
+		open(0L);
+		final CircuitBreaker.Permit hung = breaker.tryAcquire(1000L);
+
+		assertThat(breaker.tryAcquire(1999L)).isNull();
+		final CircuitBreaker.Permit next = breaker.tryAcquire(2000L);
+		assertThat(next).isNotNull();
+
+		hung.onSuccess();
+		assertThat(breaker.getState(2000L)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		next.onSuccess();
+		assertThat(breaker.getState(2000L)).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	private void open(long now) {
+		breaker.tryAcquire(now).onFailure(now);
+		breaker.tryAcquire(now).onFailure(now);
+		assertThat(breaker.getState(now)).isEqualTo(CircuitBreaker.State.OPEN);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class MicroBatchingAuthoritiesLoaderTest {
+
+	private final List<Collection<String>> requestedBatches = new ArrayList<>();
+
+	private final BulkAuthoritiesLoader bulkLoader = subjects -> {
+		synchronized (requestedBatches) {
+			requestedBatches.add(subjects);
+		}
+		return subjects.stream()
+				.filter(subject -> !subject.startsWith("nobody"))
+				.collect(Collectors.toMap(Function.identity(), subject -> List.of("USER_" + subject)));
+	};
+
+	@Test
+	public void subjectsRequestedWithinWindowAreLoadedTogether() throws Exception {
+		try (MicroBatchingAuthoritiesLoader loader =
+				new MicroBatchingAuthoritiesLoader(bulkLoader, Duration.ofMillis(200), 100)) {
+			final Map<String, Collection<String>> actual = loadConcurrently(loader, "a", "b", "c", "nobody");
+
+			assertThat(actual.get("a")).containsExactly("USER_a");
+			assertThat(actual.get("c")).containsExactly("USER_c");
+			assertThat(actual.get("nobody")).isEmpty();
+			assertThat(requestedBatches).hasSize(1);
+			assertThat(requestedBatches.get(0)).containsExactlyInAnyOrder("a", "b", "c", "nobody");
+		}
+	}
+
+	@Test
+	public void fullBatchesAreSentWithoutWaitingForWindow() throws Exception {
+		try (MicroBatchingAuthoritiesLoader loader =
+				new MicroBatchingAuthoritiesLoader(bulkLoader, Duration.ofMinutes(1), 2)) {
+			final Map<String, Collection<String>> actual = loadConcurrently(loader, "a", "b", "c", "d");
+
+			assertThat(actual).hasSize(4);
+			assertThat(requestedBatches).hasSize(2).allSatisfy(batch -> assertThat(batch).hasSize(2));
+			assertThat(loader.getBatchedSubjectCount()).isEqualTo(4);
+		}
+	}
+
+	@Test
+	public void batchesRunOnCallerThreadDoNotBlockOtherCallers() throws Exception {
+		final CountDownLatch bothLoading = new CountDownLatch(2);
+		final ScheduledExecutorService shutDown = Executors.newSingleThreadScheduledExecutor();
+		shutDown.shutdown();
+		try (MicroBatchingAuthoritiesLoader loader = new MicroBatchingAuthoritiesLoader(subjects -> {
+			bothLoading.countDown();
+			try {
+				bothLoading.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return bulkLoader.loadAuthorities(subjects);
+		}, Duration.ofMillis(200), 100, shutDown)) {
+			final long start = System.nanoTime();
+			final Map<String, Collection<String>> actual = loadConcurrently(loader, "a", "b");
+
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(4));
+			assertThat(actual.get("a")).containsExactly("USER_a");
+			assertThat(actual.get("b")).containsExactly("USER_b");
+			assertThat(requestedBatches).hasSize(2);
+		}
+	}
+
+	@Test
+	public void bulkLoaderFailuresArePropagatedToAllCallers() {
+		try (MicroBatchingAuthoritiesLoader loader = new MicroBatchingAuthoritiesLoader(subjects -> {
+			throw new IllegalStateException("database down");
+		}, Duration.ZERO, 10)) {
+			assertThatThrownBy(() -> loader.loadAuthorities("a")).isInstanceOf(IllegalStateException.class)
+					.hasMessage("database down");
+		}
+	}
+
+	private static Map<String, Collection<String>>
+			loadConcurrently(MicroBatchingAuthoritiesLoader loader, String... subjects) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(subjects.length);
+		try {
+			final Map<String, Future<Collection<String>>> futures = new HashMap<>();
+			for (final String subject : subjects) {
+				futures.put(subject, executor.submit(() -> loader.loadAuthorities(subject)));
+			}
+			final Map<String, Collection<String>> results = new HashMap<>();
+			for (final Map.Entry<String, Future<Collection<String>>> future : futures.entrySet()) {
+				results.put(future.getKey(), future.getValue().get(5, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
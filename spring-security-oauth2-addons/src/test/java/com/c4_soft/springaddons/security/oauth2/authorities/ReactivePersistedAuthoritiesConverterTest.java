@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactivePersistedAuthoritiesConverterTest {
+
+	private final Jwt jwt = Jwt.withTokenValue("test.jwt.value").header("alg", "none").subject("42").build();
+
+	@Test
+	public void concurrentSubscribersShareASingleLoadOnDedicatedScheduler() throws Exception {
+		final AtomicInteger loads = new AtomicInteger();
+		final AtomicReference<String> loadingThread = new AtomicReference<>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final Scheduler scheduler = Schedulers.newBoundedElastic(2, 16, "authorities");
+		try (CachingAuthoritiesProvider provider = CachingAuthoritiesProvider.builder(subject -> {
+			loads.incrementAndGet();
+			loadingThread.set(Thread.currentThread().getName());
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("USER");
+		}).build()) {
+			final ReactivePersistedAuthoritiesConverter converter =
+					new ReactivePersistedAuthoritiesConverter(provider, Jwt::getSubject, scheduler);
+
+			final Mono<List<Collection<GrantedAuthority>>> all =
+					Flux.range(0, 8).flatMap(i -> converter.convert(jwt)).collectList().cache();
+			all.subscribe();
+			Thread.sleep(100);
+			release.countDown();
+
+			final List<Collection<GrantedAuthority>> actual = all.block(Duration.ofSeconds(5));
+			assertThat(actual).hasSize(8);
+			assertThat(actual).allSatisfy(
+					authorities -> assertThat(authorities).extracting(GrantedAuthority::getAuthority)
+							.containsExactly("USER"));
+			assertThat(loads).hasValue(1);
+			assertThat(loadingThread.get()).startsWith("authorities");
+		} finally {
+			scheduler.dispose();
+		}
+	}
+}
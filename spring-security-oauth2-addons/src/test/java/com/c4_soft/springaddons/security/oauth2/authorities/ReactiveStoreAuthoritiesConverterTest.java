@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.authorities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.c4_soft.springaddons.security.oauth2.GrantedAuthoritiesCache;
+import com.c4_soft.springaddons.security.oauth2.keycloak.ReactiveKeycloakOidcIdAuthenticationConverter;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactiveStoreAuthoritiesConverterTest {
+
+	private final Map<String, List<String>> store =
+			Map.of("42", List.of("USER", "ADMIN"), "43", List.of("USER", "ADMIN"));
+
+	private final ReactiveAuthoritiesLoader loader =
+			subject -> Flux.fromIterable(store.getOrDefault(subject, List.of()));
+
+	private static Jwt jwt(String subject) {
+		return Jwt.withTokenValue("test.jwt.value")
+				.header("alg", "none")
+				.subject(subject)
+				.claim("preferred_username", "ch4mpy")
+				.build();
+	}
+
+	@Test
+	public void authoritiesAreLoadedBySubject() {
+		final OidcIdAuthenticationToken actual = new ReactiveKeycloakOidcIdAuthenticationConverter(
+				new ReactiveStoreAuthoritiesConverter(
+						loader,
+						Jwt::getSubject,
+						new GrantedAuthoritiesCache("ROLE_", 16, 16))).convert(jwt("42")).block();
+
+		assertThat(actual.getAuthorities()).containsExactlyInAnyOrder(
+				new SimpleGrantedAuthority("ROLE_USER"),
+				new SimpleGrantedAuthority("ROLE_ADMIN"));
+	}
+
+	@Test
+	public void unknownSubjectsHaveNoAuthorities() {
+		assertThat(new ReactiveStoreAuthoritiesConverter(loader).convert(jwt("nobody")).block()).isEmpty();
+	}
+
+	@Test
+	public void identicalAuthoritySetsAreShared() {
+		final ReactiveStoreAuthoritiesConverter converter = new ReactiveStoreAuthoritiesConverter(loader);
+
+		final Collection<GrantedAuthority> first = converter.convert(jwt("42")).block();
+
+		assertThat(converter.convert(jwt("43")).block()).isSameAs(first);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakClientRolesAuthoritiesConverter.Mapping;
+import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakClientRolesAuthoritiesConverter.RoleCase;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class KeycloakClientRolesAuthoritiesConverterTest {
+
+	private final KeycloakClientRolesAuthoritiesConverter converter = new KeycloakClientRolesAuthoritiesConverter(
+			Mapping.realmRoles("ROLE_", RoleCase.UNCHANGED),
+			Mapping.clientRoles("my-client", "MY_CLIENT_", RoleCase.UPPER),
+			Mapping.clientRoles("other.client", "", RoleCase.LOWER));
+
+	private static Jwt jwt(Map<String, Object> claims) {
+		return Jwt.withTokenValue("test.jwt.value").header("alg", "none").claims(c -> c.putAll(claims)).build();
+	}
+
+	@Test
+	public void realmAndClientRolesAreMappedWithTheirOwnRules() {
+		final Jwt jwt = jwt(
+				Map.of(
+						"realm_access",
+						Map.of("roles", List.of("USER")),
+						"resource_access",
+						Map.of(
+								"my-client",
+								Map.of("roles", List.of("admin")),
+								"other.client",
+								Map.of("roles", List.of("Reader")),
+								"ignored-client",
+								Map.of("roles", List.of("ignored")))));
+
+		assertThat(converter.convert(jwt)).containsExactlyInAnyOrder(
+				new SimpleGrantedAuthority("ROLE_USER"),
+				new SimpleGrantedAuthority("MY_CLIENT_ADMIN"),
+				new SimpleGrantedAuthority("reader"));
+	}
+
+	@Test
+	public void singleSourceSetIsShared() {
+		final Jwt jwt = jwt(Map.of("resource_access", Map.of("my-client", Map.of("roles", List.of("admin")))));
+
+		assertThat(converter.convert(jwt)).containsExactly(new SimpleGrantedAuthority("MY_CLIENT_ADMIN"))
+				.isSameAs(converter.convert(jwt));
+	}
+
+	@Test
+	public void missingOrMalformedClaimsAreIgnored() {
+		assertThat(converter.convert(jwt(Map.of("sub", "42")))).isEmpty();
+		assertThat(converter.convert(jwt(Map.of("realm_access", "USER", "resource_access", List.of())))).isEmpty();
+	}
+}
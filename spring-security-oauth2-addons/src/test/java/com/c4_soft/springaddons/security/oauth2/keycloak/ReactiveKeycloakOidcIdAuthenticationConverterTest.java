@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
+import com.c4_soft.springaddons.security.oauth2.oidc.OidcIdAuthenticationToken;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class ReactiveKeycloakOidcIdAuthenticationConverterTest {
+
+	private final Jwt jwt = Jwt.withTokenValue("test.jwt.value")
+			.header("alg", "none")
+			.subject("42")
+			.claim("preferred_username", "ch4mpy")
+			.claim("realm_access", Map.of("roles", List.of("USER")))
+			.build();
+
+	@Test
+	public void authoritiesAreRetrievedFromReactiveSource() {
+		final OidcIdAuthenticationToken actual = new ReactiveKeycloakOidcIdAuthenticationConverter(
+				ReactiveAuthoritiesConverter.of(new KeycloakEmbeddedAuthoritiesConverter())).convert(jwt).block();
+
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+		assertThat(actual.getAuthorities()).containsExactly(new SimpleGrantedAuthority("ROLE_USER"));
+	}
+
+	@Test
+	public void emptySourceGivesNoAuthorities() {
+		final OidcIdAuthenticationToken actual =
+				new ReactiveKeycloakOidcIdAuthenticationConverter(jwt -> Mono.empty()).convert(jwt).block();
+
+		assertThat(actual.getAuthorities()).isEmpty();
+	}
+
+	@Test
+	public void blockingSourcesAreOffloaded() {
+		final AtomicReference<String> convertingThread = new AtomicReference<>();
+		final Scheduler scheduler = Schedulers.newBoundedElastic(1, 16, "authorities");
+		try {
+			final ReactiveAuthoritiesConverter authoritiesConverter = ReactiveAuthoritiesConverter.offloaded(jwt -> {
+				convertingThread.set(Thread.currentThread().getName());
+				return Set.of(new SimpleGrantedAuthority("ROLE_USER"));
+			}, scheduler);
+
+			new ReactiveKeycloakJwtAuthenticationTokenConverter(authoritiesConverter).convert(jwt).block();
+
+			assertThat(convertingThread.get()).startsWith("authorities");
+		} finally {
+			scheduler.dispose();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.oidc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakOidcIdAuthenticationConverter;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class JwtOidcIdTest {
+
+	private final Instant iat = Instant.ofEpochSecond(1588000000L);
+
+	private final Jwt jwt = Jwt.withTokenValue("test.jwt.value")
+			.header("alg", "none")
+			.issuer("https://localhost:8443/auth/realms/master")
+			.subject("42")
+			.audience(List.of("first", "second"))
+			.issuedAt(iat)
+			.expiresAt(iat.plusSeconds(300))
+			.claim("preferred_username", "ch4mpy")
+			.claim("email_verified", true)
+			.claim("address", Map.of("country", "France"))
+			.build();
+
+	@Test
+	public void claimsAreNotCopied() {
+		final JwtOidcId actual = new JwtOidcId(jwt);
+
+		assertThat(actual.getJwt()).isSameAs(jwt);
+		assertThat(actual.getTokenValue()).isEqualTo("test.jwt.value");
+		assertThat(actual.get("sub")).isSameAs(jwt.getClaims().get("sub"));
+		assertThat(actual.getDelegate()).isEqualTo(jwt.getClaims());
+	}
+
+	@Test
+	public void accessorsBehaveAsJwtOnes() {
+		final JwtOidcId actual = new JwtOidcId(jwt);
+
+		assertThat(actual.getIssuer()).isEqualTo(jwt.getIssuer());
+		assertThat(actual.getSubject()).isEqualTo(jwt.getSubject());
+		assertThat(actual.getAudience()).isEqualTo(jwt.getAudience());
+		assertThat(actual.getIssuedAt()).isEqualTo(jwt.getIssuedAt());
+		assertThat(actual.getExpiresAt()).isEqualTo(jwt.getExpiresAt());
+		assertThat(actual.getEmailVerified()).isTrue();
+		assertThat(actual.getAddress().getCountry()).isEqualTo("France");
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+	}
+
+	@Test
+	public void conversionsAreDoneOnce() {
+		final JwtOidcId actual = new JwtOidcId(jwt);
+
+		assertThat(actual.getIssuer()).isSameAs(actual.getIssuer());
+		assertThat(actual.getAudience()).isSameAs(actual.getAudience());
+		assertThat(actual.getAddress()).isSameAs(actual.getAddress());
+	}
+
+	@Test
+	public void keycloakConverterUsesJwtView() {
+		final OidcIdAuthenticationToken actual =
+				new KeycloakOidcIdAuthenticationConverter(token -> List.of()).convert(jwt);
+
+		assertThat(actual.getToken()).isInstanceOf(JwtOidcId.class);
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+	}
+
+}
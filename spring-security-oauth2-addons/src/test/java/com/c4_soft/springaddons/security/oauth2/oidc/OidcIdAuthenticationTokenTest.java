@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.oidc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class OidcIdAuthenticationTokenTest {
+
+	private static OidcIdAuthenticationToken token(String subject, String... authorities) {
+		return new OidcIdAuthenticationToken(
+				new OidcIdBuilder().subject(subject).preferredUsername("ch4mpy").build(),
+				Stream.of(authorities).map(SimpleGrantedAuthority::new).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void tokensWithSameClaimsAndAuthoritiesAreEqual() {
+		final OidcIdAuthenticationToken a = token("42", "ROLE_USER");
+		final OidcIdAuthenticationToken b = token("42", "ROLE_USER");
+
+		assertThat(a).isEqualTo(b);
+		assertThat(a.hashCode()).isEqualTo(b.hashCode());
+		assertThat(Set.of(a)).contains(b);
+	}
+
+	@Test
+	public void tokensWithDifferentClaimsOrAuthoritiesAreNotEqual() {
+		final OidcIdAuthenticationToken a = token("42", "ROLE_USER");
+
+		assertThat(a).isNotEqualTo(token("43", "ROLE_USER"));
+		assertThat(a).isNotEqualTo(token("42", "ROLE_ADMIN"));
+	}
+
+	@Test
+	public void hashCodeFollowsDetailsAndAuthenticatedChanges() {
+		final OidcIdAuthenticationToken a = token("42", "ROLE_USER");
+		final OidcIdAuthenticationToken b = token("42", "ROLE_USER");
+		final int initial = a.hashCode();
+
+		a.setDetails(List.of("remote address"));
+		assertThat(a).isNotEqualTo(b);
+		assertThat(a.hashCode()).isNotEqualTo(initial);
+
+		a.setDetails(a.getToken());
+		assertThat(a.hashCode()).isEqualTo(initial);
+		assertThat(a).isEqualTo(b);
+
+		a.setAuthenticated(false);
+		assertThat(a).isNotEqualTo(b);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.c4_soft.springaddons.security.oauth2.oidc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+
+/**
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+public class OidcIdBuilderTest {
+
+	@Test
+	public void buildHandsClaimsOver() {
+		final OidcIdBuilder builder = new OidcIdBuilder().subject("42").preferredUsername("ch4mpy");
+
+		final OidcId actual = builder.build();
+
+		assertThat(builder.isBuilt()).isTrue();
+		assertThat(actual.getSubject()).isEqualTo("42");
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+		assertThat(actual.getDelegate()).containsOnlyKeys("sub", "preferred_username");
+	}
+
+	@Test
+	public void copyOfBuiltBuilderIsUsable() {
+		final OidcIdBuilder builder = new OidcIdBuilder().subject("42");
+		builder.build();
+
+		final OidcId actual = new OidcIdBuilder(builder).preferredUsername("ch4mpy").build();
+
+		assertThat(actual.getSubject()).isEqualTo("42");
+		assertThat(actual.getName()).isEqualTo("ch4mpy");
+	}
+
+	@Test
+	public void datesAreStoredAsEpochSeconds() {
+		final OidcIdBuilder builder = new OidcIdBuilder().expiresAt(Instant.ofEpochSecond(1588000300L))
+				.issuedAt(1588000000L)
+				.updatedAt(Instant.ofEpochSecond(1587000000L));
+
+		assertThat(builder).containsEntry("exp", 1588000300L)
+				.containsEntry("iat", 1588000000L)
+				.containsEntry("updated_at", 1587000000L);
+		assertThat(builder.getAsEpochSecond("exp")).isEqualTo(1588000300L);
+		assertThat(builder.build().getUpdatedAt()).isEqualTo(Instant.ofEpochSecond(1587000000L));
+	}
+
+	@Test
+	public void claimNamesAreInternedWhateverTheWayTheyAreAdded() {
+		final OidcIdBuilder copied = new OidcIdBuilder(Map.of(new String("sub"), "42"));
+		final OidcIdBuilder putAll = new OidcIdBuilder();
+		putAll.putAll(Map.of(new String("sub"), "42"));
+		final OidcIdBuilder merged = new OidcIdBuilder();
+		merged.merge(new String("sub"), "42", (a, b) -> b);
+		final OidcIdBuilder putIfAbsent = new OidcIdBuilder();
+		putIfAbsent.putIfAbsent(new String("sub"), "42");
+
+		for (final OidcIdBuilder builder : List.of(copied, putAll, merged, putIfAbsent)) {
+			assertThat(builder.keySet().iterator().next()).isSameAs(IdTokenClaimNames.SUB);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void builderCantBeModifiedAfterBuild() {
+		final OidcIdBuilder builder = new OidcIdBuilder().subject("42");
+		builder.build();
+
+		builder.preferredUsername("ch4mpy");
+	}
+
+	@Test
+	public void builderCanBeBuiltSeveralTimes() {
+		final OidcIdBuilder builder = new OidcIdBuilder().subject("42");
+		final OidcId first = builder.build();
+
+		final OidcId second = builder.build();
+
+		assertThat(second.getSubject()).isEqualTo("42");
+		assertThat(second.getDelegate()).isEqualTo(first.getDelegate());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void builderEntriesAreReadOnlyAfterBuild() {
+		final OidcIdBuilder builder = new OidcIdBuilder().subject("42");
+		builder.build();
+
+		builder.entrySet().iterator().next().setValue("machin");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void wrappedClaimsAreReadOnly() {
+		new OidcId(new OidcIdBuilder().subject("42"), false).put("sub", "machin");
+	}
+
+	@Test
+	public void copyFlagIsHonored() {
+		final Map<String, Object> claims = Map.of("sub", "42");
+
+		assertThat(new OidcId(claims, true).getDelegate()).isNotSameAs(claims).isEqualTo(claims);
+		assertThat(new OidcId(claims, false).getDelegate()).isEqualTo(claims);
+	}
+
+}
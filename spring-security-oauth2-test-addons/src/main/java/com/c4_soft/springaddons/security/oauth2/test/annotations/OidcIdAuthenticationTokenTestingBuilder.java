@@ -29,7 +29,7 @@ public class OidcIdAuthenticationTokenTestingBuilder<T extends OidcIdAuthenticat
 	@Override
 	public OidcIdAuthenticationToken build() {
 		return new OidcIdAuthenticationToken(
-				tokenBuilder.build(),
+				new OidcIdBuilder(tokenBuilder).build(),
 				authorities.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toSet()));
 	}
 
@@ -49,7 +49,7 @@ public class OidcIdAuthenticationTokenWebTestClientConfigurer
 
 	@Override
 	public OidcIdAuthenticationToken build() {
-		return new OidcIdAuthenticationToken(tokenBuilder.build(), grantedAuthorities);
+		return new OidcIdAuthenticationToken(new OidcIdBuilder(tokenBuilder).build(), grantedAuthorities);
 	}
 
 	public static OidcIdAuthenticationTokenWebTestClientConfigurer oidcId() {
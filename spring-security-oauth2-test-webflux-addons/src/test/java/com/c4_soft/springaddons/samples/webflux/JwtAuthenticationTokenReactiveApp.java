@@ -1,29 +1,22 @@
 package com.c4_soft.springaddons.samples.webflux;
 
-import java.util.Collection;
-
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 
 import com.c4_soft.springaddons.samples.webflux.domain.GreetingController;
 import com.c4_soft.springaddons.samples.webflux.domain.MessageService;
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
 import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakEmbeddedAuthoritiesConverter;
-import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakJwtAuthenticationTokenConverter;
-
-import reactor.core.publisher.Mono;
+import com.c4_soft.springaddons.security.oauth2.keycloak.ReactiveKeycloakJwtAuthenticationTokenConverter;
 
 @SpringBootApplication(
 		scanBasePackageClasses = {
@@ -43,7 +36,7 @@ public class JwtAuthenticationTokenReactiveApp {
 		@Bean
 		public SecurityWebFilterChain springSecurityFilterChain(
 				ServerHttpSecurity http,
-				Converter<Jwt, Mono<JwtAuthenticationToken>> authenticationConverter) {
+				ReactiveKeycloakJwtAuthenticationTokenConverter authenticationConverter) {
 			// @formatter:off
 			http.csrf().disable().httpBasic().disable().formLogin().disable();
 			http.authorizeExchange()
@@ -55,15 +48,15 @@ public class JwtAuthenticationTokenReactiveApp {
 		}
 
 		@Bean
-		public Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter() {
-			return new KeycloakEmbeddedAuthoritiesConverter();
+		public ReactiveAuthoritiesConverter authoritiesConverter() {
+			// reads token claims only: no need to offload it from event-loop
+			return ReactiveAuthoritiesConverter.of(new KeycloakEmbeddedAuthoritiesConverter());
 		}
 
 		@Bean
-		public JwtAuthenticationConverter
-				authenticationConverter(Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter) {
-			return jwt -> Mono.just(jwt)
-					.map(new KeycloakJwtAuthenticationTokenConverter(authoritiesConverter)::convert);
+		public ReactiveKeycloakJwtAuthenticationTokenConverter
+				authenticationConverter(ReactiveAuthoritiesConverter authoritiesConverter) {
+			return new ReactiveKeycloakJwtAuthenticationTokenConverter(authoritiesConverter);
 		}
 
 	}
@@ -80,7 +73,4 @@ public class JwtAuthenticationTokenReactiveApp {
 		}
 	}
 
-	public static interface JwtAuthenticationConverter extends Converter<Jwt, Mono<JwtAuthenticationToken>> {
-	}
-
 }
@@ -1,27 +1,20 @@
 package com.c4_soft.springaddons.samples.webflux;
 
-import java.util.Collection;
-
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.convert.converter.Converter;
-import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 
+import com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter;
 import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakEmbeddedAuthoritiesConverter;
-import com.c4_soft.springaddons.security.oauth2.keycloak.KeycloakOidcIdAuthenticationConverter;
-
-import reactor.core.publisher.Mono;
+import com.c4_soft.springaddons.security.oauth2.keycloak.ReactiveKeycloakOidcIdAuthenticationConverter;
 
 @SpringBootApplication(scanBasePackageClasses = OidcIdAuthenticationTokenReactiveApp.class)
 public class OidcIdAuthenticationTokenReactiveApp {
@@ -35,7 +28,9 @@ public class OidcIdAuthenticationTokenReactiveApp {
 
 		@Bean
 		public SecurityWebFilterChain
-				springSecurityFilterChain(ServerHttpSecurity http, AuthenticationConverter authenticationConverter) {
+				springSecurityFilterChain(
+						ServerHttpSecurity http,
+						ReactiveKeycloakOidcIdAuthenticationConverter authenticationConverter) {
 			// @formatter:off
 			http.csrf().disable().httpBasic().disable().formLogin().disable();
 			http.authorizeExchange().pathMatchers("/secured-endpoint").hasAnyRole("AUTHORIZED_PERSONNEL").anyExchange()
@@ -47,16 +42,15 @@ public class OidcIdAuthenticationTokenReactiveApp {
 		}
 
 		@Bean
-		public Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter() {
-			return new KeycloakEmbeddedAuthoritiesConverter();
+		public ReactiveAuthoritiesConverter authoritiesConverter() {
+			// reads token claims only: no need to offload it from event-loop
+			return ReactiveAuthoritiesConverter.of(new KeycloakEmbeddedAuthoritiesConverter());
 		}
 
 		@Bean
-		public AuthenticationConverter
-				authenticationConverter(Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter) {
-			KeycloakOidcIdAuthenticationConverter extractor =
-					new KeycloakOidcIdAuthenticationConverter(authoritiesConverter);
-			return jwt -> Mono.just(jwt).map(extractor::convert);
+		public ReactiveKeycloakOidcIdAuthenticationConverter
+				authenticationConverter(ReactiveAuthoritiesConverter authoritiesConverter) {
+			return new ReactiveKeycloakOidcIdAuthenticationConverter(authoritiesConverter);
 		}
 	}
 
@@ -71,7 +65,4 @@ public class OidcIdAuthenticationTokenReactiveApp {
 			return ReactiveJwtDecoders.fromOidcIssuerLocation(issuerUri);
 		}
 	}
-
-	static interface AuthenticationConverter extends Converter<Jwt, Mono<AbstractAuthenticationToken>> {
-	}
 }
@@ -13,20 +13,22 @@
 package com.c4_soft.springaddons.samples.webflux.jpa;
 
 import java.security.Principal;
-import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.c4_soft.springaddons.security.oauth2.ClaimSet;
+import com.c4_soft.springaddons.security.oauth2.authorities.CachingAuthoritiesProvider;
 
 /**
+ * Blocking (JPA) authorities source: on the reactive request path, it must be offloaded (see
+ * {@link com.c4_soft.springaddons.security.oauth2.ReactiveAuthoritiesConverter#offloaded(Converter)}). Prefer a
+ * non-blocking store with {@link com.c4_soft.springaddons.security.oauth2.authorities.ReactiveStoreAuthoritiesConverter}
+ * when possible.
+ *
  * @author Jérôme Wacongne &lt;ch4mp#64;c4-soft.com&gt;
  *
  */
@@ -34,32 +36,26 @@ public class JpaGrantedAuthoritiesConverter<T extends ClaimSet & Principal>
 		implements
 		Converter<Map<String, Object>, Set<GrantedAuthority>> {
 
-	private final UserAuthorityRepository authoritiesRepo;
+	private final CachingAuthoritiesProvider authoritiesProvider;
 
 	private final Converter<Map<String, Object>, T> claimsExtractor;
 
 	@Autowired
 	public JpaGrantedAuthoritiesConverter(
-			UserAuthorityRepository authoritiesRepo,
+			CachingAuthoritiesProvider authoritiesProvider,
 			Converter<Map<String, Object>, T> claimsExtractor) {
-		this.authoritiesRepo = authoritiesRepo;
+		this.authoritiesProvider = authoritiesProvider;
 		this.claimsExtractor = claimsExtractor;
 	}
 
 	@Override
-	@Transactional(readOnly = true)
 	public Set<GrantedAuthority> convert(Map<String, Object> claimsMap) {
 		final var claims = claimsExtractor.convert(claimsMap);
-		final Set<String> scopes = claims.getAsStringSet(claims.containsKey("scope") ? "scope" : "scp");
-		if (scopes == null || !scopes.contains("showcase")) {
+		if (!claims.hasScope("showcase")) {
 			return Set.of();
 		}
 
-		final Collection<UserAuthority> authorities = authoritiesRepo.findByIdUserSubject(claims.getName());
-		return authorities.stream()
-				.map(UserAuthority::getAuthority)
-				.map(SimpleGrantedAuthority::new)
-				.collect(Collectors.toSet());
+		return authoritiesProvider.getAuthorities(claims.getName());
 	}
 
 }
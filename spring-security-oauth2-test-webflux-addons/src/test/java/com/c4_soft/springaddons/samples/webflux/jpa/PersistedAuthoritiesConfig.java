@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Jérôme Wacongne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.c4_soft.springaddons.samples.webflux.jpa;
+
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.c4_soft.springaddons.security.oauth2.authorities.CachingAuthoritiesProvider;
+import com.c4_soft.springaddons.security.oauth2.authorities.MicroBatchingAuthoritiesLoader;
+
+/**
+ * Both beans own executors: declaring them as beans (rather than creating them in a converter constructor) lets the
+ * application context close them, and so stop their threads, when it is closed.
+ *
+ * @author Jérôme Wacongne &lt;ch4mp&#64;c4-soft.com&gt;
+ */
+@Configuration
+public class PersistedAuthoritiesConfig {
+
+	@Bean(destroyMethod = "close")
+	public MicroBatchingAuthoritiesLoader authoritiesLoader(UserAuthorityRepository authoritiesRepo) {
+		return new MicroBatchingAuthoritiesLoader(
+				subjects -> authoritiesRepo.findByIdUserSubjectIn(subjects)
+						.stream()
+						.collect(
+								Collectors.groupingBy(
+										UserAuthority::getUserSubject,
+										Collectors.mapping(UserAuthority::getAuthority, Collectors.toList()))));
+	}
+
+	@Bean(destroyMethod = "close")
+	public CachingAuthoritiesProvider authoritiesProvider(MicroBatchingAuthoritiesLoader authoritiesLoader) {
+		return CachingAuthoritiesProvider.builder(authoritiesLoader).build();
+	}
+}
@@ -17,7 +17,6 @@ package com.c4_soft.springaddons.samples.webmvc.common.persistence.jpa;
 
 import java.util.Collection;
 
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 
 /**
@@ -26,7 +25,8 @@ import org.springframework.data.repository.CrudRepository;
  */
 public interface UserAuthorityRepository extends CrudRepository<UserAuthority, UserAuthorityId> {
 
-	@Cacheable("users-authorities")
 	Collection<UserAuthority> findByIdUserSubject(String subject);
 
+	Collection<UserAuthority> findByIdUserSubjectIn(Collection<String> subjects);
+
 }